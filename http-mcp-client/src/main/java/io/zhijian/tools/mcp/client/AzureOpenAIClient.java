@@ -2,26 +2,29 @@ package io.zhijian.tools.mcp.client;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Azure OpenAI HTTP客户端
  */
 public class AzureOpenAIClient implements LLMClient {
     
-    private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
+    private final ChatRequestEncoder requestEncoder;
     
     // Azure OpenAI配置
     private final String endpoint;
@@ -33,9 +36,6 @@ public class AzureOpenAIClient implements LLMClient {
     private final Double topP;
     
     public AzureOpenAIClient() {
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(60))
-                .build();
         this.objectMapper = new ObjectMapper();
         
         // 从配置文件读取配置
@@ -45,8 +45,14 @@ public class AzureOpenAIClient implements LLMClient {
         this.engine = config.getProperty("azure.openai.engine", "gpt-4o");
         this.apiVersion = config.getProperty("azure.openai.api_version", "2024-02-15-preview");
         this.temperature = Double.parseDouble(config.getProperty("azure.openai.temperature", "0.01"));
-        this.maxTokens = Integer.parseInt(config.getProperty("azure.openai.max_tokens", "64000"));
+        this.maxTokens = Integer.parseInt(config.getProperty("azure.openai.max_tokens", "4096"));
         this.topP = Double.parseDouble(config.getProperty("azure.openai.top_p", "0.95"));
+        
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("temperature", temperature);
+        parameters.put("max_tokens", maxTokens);
+        parameters.put("top_p", topP);
+        this.requestEncoder = new ChatRequestEncoder(objectMapper, parameters);
     }
     
     private Properties loadConfig() {
@@ -66,61 +72,90 @@ public class AzureOpenAIClient implements LLMClient {
         return "Azure OpenAI";
     }
     
+    @Override
+    public URI getEndpoint() {
+        return URI.create(endpoint);
+    }
+    
+    @Override
+    public Map<String, Object> getModelParameters() {
+        // 部署名在URL中，不在请求体里
+        Map<String, Object> parameters = new LinkedHashMap<>(requestEncoder.getParameters());
+        parameters.put("engine", engine);
+        return parameters;
+    }
+    
     /**
      * 发送聊天请求到Azure OpenAI API
      */
     @Override
-    public String chat(List<Map<String, String>> messages) throws IOException, InterruptedException {
-        // 构建请求体
-        ObjectNode requestBody = objectMapper.createObjectNode();
-        requestBody.put("temperature", temperature);
-        requestBody.put("max_tokens", maxTokens);
-        requestBody.put("top_p", topP);
+    public ChatResponse chat(List<Map<String, String>> messages) throws IOException, InterruptedException {
+        return chat(messages, null);
+    }
+    
+    /**
+     * 发送带函数定义的聊天请求，解析回复文本、函数调用和token用量
+     */
+    @Override
+    public ChatResponse chat(List<Map<String, String>> messages, ArrayNode tools) throws IOException, InterruptedException {
+        return send(requestEncoder.encode(messages, tools, false));
+    }
+    
+    /**
+     * 发送流式聊天请求，逐行解析 SSE 增量
+     */
+    @Override
+    public String chatStream(List<Map<String, String>> messages, LLMStreamListener listener) throws IOException, InterruptedException {
+        return chatStream(messages, null, listener).getContent();
+    }
+    
+    /**
+     * 发送带函数定义的流式聊天请求，函数调用的参数片段在流中拼接
+     */
+    @Override
+    public ChatResponse chatStream(List<Map<String, String>> messages, ArrayNode tools,
+                                   LLMStreamListener listener) throws IOException, InterruptedException {
+        PooledRequestBody body = requestEncoder.encode(messages, tools, true);
+        HttpRequest request = createRequest(body, true);
         
-        // 添加消息
-        ArrayNode messagesArray = objectMapper.createArrayNode();
-        for (Map<String, String> message : messages) {
-            ObjectNode messageNode = objectMapper.createObjectNode();
-            messageNode.put("role", message.get("role"));
-            messageNode.put("content", message.get("content"));
-            messagesArray.add(messageNode);
+        try {
+            HttpResponse<Stream<String>> response = LLMTransport.shared().send(request, HttpResponse.BodyHandlers.ofLines());
+            
+            try (Stream<String> lines = response.body()) {
+                if (response.statusCode() != 200) {
+                    throw new RuntimeException(describeError(response.statusCode(), lines.collect(Collectors.joining("\n"))));
+                }
+                ChatResponse result = ChatStreamReader.readResponse(lines, objectMapper, listener);
+                body.release();
+                return result;
+            }
+        } catch (java.net.http.HttpTimeoutException e) {
+            throw new RuntimeException("Azure OpenAI请求超时: " + e.getMessage(), e);
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("Azure OpenAI流式请求网络异常: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Azure OpenAI请求被中断: " + e.getMessage(), e);
         }
-        requestBody.set("messages", messagesArray);
-        
-        // 构建URL
-        String url = endpoint + "/openai/deployments/" + engine + "/chat/completions?api-version=" + apiVersion;
-        
-        // 创建HTTP请求
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .header("api-key", credential)
-                .header("Content-Type", "application/json")
-                .timeout(Duration.ofMinutes(1))
-                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requestBody)))
-                .build();
+    }
+    
+    private ChatResponse send(PooledRequestBody body) {
+        HttpRequest request = createRequest(body, false);
         
-        // 发送请求
+        // 发送请求，响应体边接收边解析
         try {
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<InputStream> response = LLMTransport.shared().send(request, HttpResponse.BodyHandlers.ofInputStream());
             
-            if (response.statusCode() != 200) {
-                String errorDetail = "Azure OpenAI请求失败，状态码: " + response.statusCode() + "，响应: " + response.body();
-                
-                // 根据状态码提供更具体的错误信息
-                if (response.statusCode() == 401) {
-                    errorDetail += "\n可能原因：API密钥无效或已过期";
-                } else if (response.statusCode() == 400) {
-                    errorDetail += "\n可能原因：请求参数错误，请检查模型名称、API版本等配置";
-                } else if (response.statusCode() == 429) {
-                    errorDetail += "\n可能原因：请求频率过高，请稍后重试";
-                } else if (response.statusCode() == 503) {
-                    errorDetail += "\n可能原因：服务暂时不可用，请稍后重试";
+            try (InputStream responseBody = response.body()) {
+                if (response.statusCode() != 200) {
+                    throw new RuntimeException(describeError(response.statusCode(), new String(responseBody.readAllBytes(), StandardCharsets.UTF_8)));
                 }
                 
-                throw new RuntimeException(errorDetail);
+                ChatResponse result = ChatResponseReader.read(responseBody, objectMapper);
+                // 响应完整收到时请求体已经发送完毕，缓冲区可以回收；失败时不回收
+                body.release();
+                return result;
             }
-            
-            return response.body();
         } catch (java.net.http.HttpTimeoutException e) {
             throw new RuntimeException("Azure OpenAI请求超时: " + e.getMessage(), e);
         } catch (IOException e) {
@@ -132,27 +167,36 @@ public class AzureOpenAIClient implements LLMClient {
     }
     
     /**
-     * 简单的聊天方法，接收单条用户消息
+     * @param body 已编码的请求体：系统提示和 tools 在多次请求之间复用已编码的JSON
      */
-    @Override
-    public String chat(String userMessage) throws IOException, InterruptedException {
-        return chat(List.of(Map.of("role", "user", "content", userMessage)));
+    private HttpRequest createRequest(PooledRequestBody body, boolean stream) {
+        // 构建URL
+        String url = endpoint + "/openai/deployments/" + engine + "/chat/completions?api-version=" + apiVersion;
+        
+        // 创建HTTP请求
+        return HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("api-key", credential)
+                .header("Content-Type", "application/json")
+                .header("Accept", stream ? "text/event-stream" : "application/json")
+                .timeout(Duration.ofMinutes(1))
+                .POST(body.toBodyPublisher())
+                .build();
     }
     
-    /**
-     * 从API响应中提取助手回复内容
-     */
-    @Override
-    public String extractAssistantMessage(String apiResponse) throws IOException {
-        ObjectNode responseNode = (ObjectNode) objectMapper.readTree(apiResponse);
-        ArrayNode choices = (ArrayNode) responseNode.get("choices");
-        if (choices != null && choices.size() > 0) {
-            ObjectNode firstChoice = (ObjectNode) choices.get(0);
-            ObjectNode message = (ObjectNode) firstChoice.get("message");
-            if (message != null) {
-                return message.get("content").asText();
-            }
+    private String describeError(int statusCode, String body) {
+        String errorDetail = "Azure OpenAI请求失败，状态码: " + statusCode + "，响应: " + body;
+        
+        // 根据状态码提供更具体的错误信息
+        if (statusCode == 401) {
+            errorDetail += "\n可能原因：API密钥无效或已过期";
+        } else if (statusCode == 400) {
+            errorDetail += "\n可能原因：请求参数错误，请检查模型名称、API版本等配置";
+        } else if (statusCode == 429) {
+            errorDetail += "\n可能原因：请求频率过高，请稍后重试";
+        } else if (statusCode == 503) {
+            errorDetail += "\n可能原因：服务暂时不可用，请稍后重试";
         }
-        return "无法解析响应";
+        return errorDetail;
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
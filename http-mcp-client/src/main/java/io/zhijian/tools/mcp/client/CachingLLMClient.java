@@ -0,0 +1,99 @@
+package io.zhijian.tools.mcp.client;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import io.zhijian.tools.mcp.console.ConsoleUI;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 带响应缓存的LLM客户端
+ * 包装一个具体的提供方客户端：命中时直接返回缓存的响应（流式请求把缓存内容一次性回放给监听器），
+ * 未命中时请求提供方并写入缓存；对话中调用过非确定性工具时直接请求提供方
+ */
+public class CachingLLMClient implements LLMClient {
+    
+    private static final String RESPONSE_SCOPE = "response";
+    
+    private final LLMClient delegate;
+    private final ChatResponseCache cache;
+    private final ConsoleUI ui;
+    
+    public CachingLLMClient(LLMClient delegate, ChatResponseCache cache, ConsoleUI ui) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.ui = ui;
+    }
+    
+    @Override
+    public String getClientName() {
+        return delegate.getClientName();
+    }
+    
+    @Override
+    public URI getEndpoint() {
+        return delegate.getEndpoint();
+    }
+    
+    @Override
+    public Map<String, Object> getModelParameters() {
+        return delegate.getModelParameters();
+    }
+    
+    @Override
+    public ChatResponse chat(List<Map<String, String>> messages, ArrayNode tools) throws Exception {
+        if (!cacheable(messages)) {
+            return delegate.chat(messages, tools);
+        }
+        String key = cache.key(getClientName(), getModelParameters(), tools, RESPONSE_SCOPE, messages);
+        ChatResponse cached = cache.getResponse(getClientName(), key);
+        if (cached != null) {
+            logHit();
+            return cached;
+        }
+        ChatResponse response = delegate.chat(messages, tools);
+        cache.putResponse(key, response);
+        return response;
+    }
+    
+    @Override
+    public ChatResponse chatStream(List<Map<String, String>> messages, ArrayNode tools,
+                                   LLMStreamListener listener) throws Exception {
+        if (!cacheable(messages)) {
+            return delegate.chatStream(messages, tools, listener);
+        }
+        String key = cache.key(getClientName(), getModelParameters(), tools, RESPONSE_SCOPE, messages);
+        ChatResponse cached = cache.getResponse(getClientName(), key);
+        if (cached != null) {
+            logHit();
+            if (!cached.getContent().isEmpty()) {
+                listener.onToken(cached.getContent());
+            }
+            for (ToolCall toolCall : cached.getToolCalls()) {
+                listener.onToolCall(toolCall);
+            }
+            return cached;
+        }
+        ChatResponse response = delegate.chatStream(messages, tools, listener);
+        cache.putResponse(key, response);
+        return response;
+    }
+    
+    private boolean cacheable(List<Map<String, String>> messages) {
+        if (cache.isCacheable(messages)) {
+            return true;
+        }
+        cache.recordBypass(getClientName());
+        return false;
+    }
+    
+    private void logHit() {
+        String message = "命中响应缓存，跳过 " + getClientName() + " 请求";
+        if (ui != null) {
+            ui.logLLM(message);
+        } else {
+            System.out.println(message);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package io.zhijian.tools.mcp.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.modelcontextprotocol.spec.tool.Tool;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OpenAI 兼容接口的消息与函数调用编解码
+ * 对话历史仍然是 List<Map<String, String>>：带函数调用的助手消息把 tool_calls 数组以JSON字符串保存，
+ * 工具结果消息的 role 为 tool 并带 tool_call_id，由 ChatRequestEncoder 编码成接口需要的结构
+ */
+public class ChatMessages {
+    
+    public static final String TOOL_CALLS = "tool_calls";
+    public static final String TOOL_CALL_ID = "tool_call_id";
+    
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    private ChatMessages() {}
+    
+    /**
+     * 带函数调用的助手消息
+     */
+    public static Map<String, String> assistantWithToolCalls(String content, List<ToolCall> toolCalls) {
+        ArrayNode calls = MAPPER.createArrayNode();
+        for (ToolCall toolCall : toolCalls) {
+            ObjectNode call = calls.addObject();
+            call.put("id", toolCall.getId());
+            call.put("type", "function");
+            ObjectNode function = call.putObject("function");
+            function.put("name", toolCall.getName());
+            function.put("arguments", toolCall.getArguments());
+        }
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "assistant");
+        message.put("content", content == null ? "" : content);
+        message.put(TOOL_CALLS, calls.toString());
+        return message;
+    }
+    
+    /**
+     * 回填一个函数调用结果的 tool 消息
+     */
+    public static Map<String, String> toolResult(String toolCallId, String content) {
+        return Map.of("role", "tool", TOOL_CALL_ID, toolCallId, "content", content);
+    }
+    
+    /**
+     * 把MCP工具定义转换成请求体中的 tools 数组
+     */
+    public static ArrayNode functionTools(List<Tool> tools) {
+        ArrayNode functions = MAPPER.createArrayNode();
+        for (Tool tool : tools) {
+            ObjectNode function = functions.addObject()
+                    .put("type", "function")
+                    .putObject("function");
+            function.put("name", tool.getName());
+            function.put("description", tool.getDescription());
+            function.set("parameters", inputSchema(tool.getInputSchema()));
+        }
+        return functions;
+    }
+    
+    private static JsonNode inputSchema(Object schema) {
+        if (schema == null) {
+            return MAPPER.createObjectNode().put("type", "object");
+        }
+        if (schema instanceof String) {
+            try {
+                return MAPPER.readTree((String) schema);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("工具参数定义不是合法的JSON: " + schema, e);
+            }
+        }
+        return MAPPER.valueToTree(schema);
+    }
+}
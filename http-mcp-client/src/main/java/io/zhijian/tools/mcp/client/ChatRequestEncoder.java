@@ -0,0 +1,154 @@
+package io.zhijian.tools.mcp.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 聊天请求体编码
+ * 直接用 JsonGenerator 按固定顺序把请求体写进池化的缓冲区（PooledRequestBody），不再每次构建 ObjectNode 树。
+ * 系统提示和 tools 定义在多次请求之间不变（同一个对象），第一次编码后缓存为JSON文本，之后原样拼接，
+ * 请求的前缀因此逐字节一致，服务端的提示缓存（prompt caching）可以稳定命中
+ */
+public class ChatRequestEncoder {
+    
+    private static final SerializedString MESSAGES = new SerializedString("messages");
+    private static final SerializedString TOOLS = new SerializedString("tools");
+    private static final SerializedString STREAM = new SerializedString("stream");
+    private static final SerializedString ROLE = new SerializedString("role");
+    private static final SerializedString CONTENT = new SerializedString("content");
+    private static final SerializedString TOOL_CALLS = new SerializedString(ChatMessages.TOOL_CALLS);
+    private static final SerializedString TOOL_CALL_ID = new SerializedString(ChatMessages.TOOL_CALL_ID);
+    
+    private final ObjectMapper objectMapper;
+    private final Map<String, Object> parameters;
+    
+    // 最近一次编码的系统消息和 tools：同一个对象直接复用；多会话时各会话的对象不同但内容相同，按内容比较后复用
+    private volatile Encoded systemMessage;
+    private volatile Encoded tools;
+    
+    /**
+     * @param parameters 模型参数，按插入顺序写在请求体开头
+     */
+    public ChatRequestEncoder(ObjectMapper objectMapper, Map<String, Object> parameters) {
+        this.objectMapper = objectMapper;
+        this.parameters = new LinkedHashMap<>(parameters);
+    }
+    
+    public Map<String, Object> getParameters() {
+        return Collections.unmodifiableMap(parameters);
+    }
+    
+    /**
+     * 编码请求体
+     * @param messages 消息列表，第一条是系统消息时按前缀缓存
+     * @param toolDefinitions 函数定义，为空时不发送
+     * @return 请求体，收到完整响应后由调用方 release()
+     */
+    public PooledRequestBody encode(List<Map<String, String>> messages, ArrayNode toolDefinitions, boolean stream) throws IOException {
+        PooledRequestBody output = new PooledRequestBody();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            generator.writeStartObject();
+            for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+                generator.writeObjectField(parameter.getKey(), parameter.getValue());
+            }
+            if (stream) {
+                generator.writeFieldName(STREAM);
+                generator.writeBoolean(true);
+            }
+            if (toolDefinitions != null && toolDefinitions.size() > 0) {
+                generator.writeFieldName(TOOLS);
+                generator.writeRawValue(encodedTools(toolDefinitions));
+            }
+            
+            generator.writeFieldName(MESSAGES);
+            generator.writeStartArray();
+            for (int i = 0; i < messages.size(); i++) {
+                Map<String, String> message = messages.get(i);
+                if (i == 0 && "system".equals(message.get("role"))) {
+                    generator.writeRawValue(encodedSystemMessage(message));
+                } else {
+                    writeMessage(generator, message);
+                }
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return output;
+    }
+    
+    private String encodedSystemMessage(Map<String, String> message) throws IOException {
+        Encoded cached = systemMessage;
+        if (cached == null || !cached.matches(message)) {
+            cached = new Encoded(message, encodeMessage(message));
+            systemMessage = cached;
+        }
+        return cached.json;
+    }
+    
+    private String encodedTools(ArrayNode toolDefinitions) throws IOException {
+        Encoded cached = tools;
+        if (cached == null || !cached.matches(toolDefinitions)) {
+            cached = new Encoded(toolDefinitions, objectMapper.writeValueAsString(toolDefinitions));
+            tools = cached;
+        }
+        return cached.json;
+    }
+    
+    private String encodeMessage(Map<String, String> message) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            writeMessage(generator, message);
+        }
+        return output.toString("UTF-8");
+    }
+    
+    /**
+     * 写出一条消息，tool_calls 保存的是已经编码好的JSON数组，原样写入
+     */
+    private static void writeMessage(JsonGenerator generator, Map<String, String> message) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ROLE);
+        generator.writeString(message.get("role"));
+        String toolCalls = message.get(ChatMessages.TOOL_CALLS);
+        String content = message.get("content");
+        generator.writeFieldName(CONTENT);
+        if (content == null || (toolCalls != null && content.isEmpty())) {
+            generator.writeNull();
+        } else {
+            generator.writeString(content);
+        }
+        if (toolCalls != null) {
+            generator.writeFieldName(TOOL_CALLS);
+            generator.writeRawValue(toolCalls);
+        }
+        String toolCallId = message.get(ChatMessages.TOOL_CALL_ID);
+        if (toolCallId != null) {
+            generator.writeFieldName(TOOL_CALL_ID);
+            generator.writeString(toolCallId);
+        }
+        generator.writeEndObject();
+    }
+    
+    private static class Encoded {
+        final Object source;
+        final String json;
+        
+        Encoded(Object source, String json) {
+            this.source = source;
+            this.json = json;
+        }
+        
+        boolean matches(Object other) {
+            return source == other || source.equals(other);
+        }
+    }
+}
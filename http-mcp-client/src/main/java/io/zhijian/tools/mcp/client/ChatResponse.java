@@ -0,0 +1,77 @@
+package io.zhijian.tools.mcp.client;
+
+import java.util.List;
+
+/**
+ * 一次聊天请求的结构化结果：回复文本、原生函数调用和token用量
+ */
+public class ChatResponse {
+    
+    private final String content;
+    private final List<ToolCall> toolCalls;
+    private final Usage usage;
+    
+    public ChatResponse(String content, List<ToolCall> toolCalls) {
+        this(content, toolCalls, Usage.NONE);
+    }
+    
+    public ChatResponse(String content, List<ToolCall> toolCalls, Usage usage) {
+        this.content = content == null ? "" : content;
+        this.toolCalls = toolCalls == null ? List.of() : List.copyOf(toolCalls);
+        this.usage = usage == null ? Usage.NONE : usage;
+    }
+    
+    public String getContent() {
+        return content;
+    }
+    
+    public List<ToolCall> getToolCalls() {
+        return toolCalls;
+    }
+    
+    public boolean hasToolCalls() {
+        return !toolCalls.isEmpty();
+    }
+    
+    /**
+     * 提供方返回的token用量，未返回（例如命中缓存）时各项为 0
+     */
+    public Usage getUsage() {
+        return usage;
+    }
+    
+    /**
+     * token用量
+     */
+    public static class Usage {
+        
+        public static final Usage NONE = new Usage(0, 0, 0);
+        
+        private final int promptTokens;
+        private final int completionTokens;
+        private final int totalTokens;
+        
+        public Usage(int promptTokens, int completionTokens, int totalTokens) {
+            this.promptTokens = promptTokens;
+            this.completionTokens = completionTokens;
+            this.totalTokens = totalTokens;
+        }
+        
+        public int getPromptTokens() {
+            return promptTokens;
+        }
+        
+        public int getCompletionTokens() {
+            return completionTokens;
+        }
+        
+        public int getTotalTokens() {
+            return totalTokens;
+        }
+        
+        @Override
+        public String toString() {
+            return "Usage{prompt=" + promptTokens + ", completion=" + completionTokens + ", total=" + totalTokens + "}";
+        }
+    }
+}
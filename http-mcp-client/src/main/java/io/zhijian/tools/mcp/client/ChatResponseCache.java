@@ -0,0 +1,333 @@
+package io.zhijian.tools.mcp.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * LLM响应缓存
+ * 键是消息列表规范化后（合并空白、忽略函数调用ID）连同提供方、模型参数、tools 定义一起计算的 SHA-256；
+ * 内存层按 LRU 淘汰，可选的磁盘层每个键一个文件，两层都按有效期过期。
+ * 对话中出现非确定性工具（不在 deterministicTools 中）的调用时既不读也不写缓存。
+ * 按提供方统计命中、未命中和跳过次数
+ */
+public class ChatResponseCache {
+    
+    private static final Pattern MARKER_TOOL_NAME = Pattern.compile("【工具调用】\\s*(?:编号:[^\\n]*\\n\\s*)?工具名称:\\s*([^\\n]+)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Path diskDir;
+    private final Set<String> deterministicTools;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Cached> memory;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    
+    /**
+     * @param diskDir 磁盘层目录，为 null 时只使用内存层
+     */
+    public ChatResponseCache(int maxEntries, long ttlMillis, Path diskDir, Set<String> deterministicTools) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.diskDir = diskDir;
+        this.deterministicTools = deterministicTools;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true);
+        if (diskDir != null) {
+            try {
+                Files.createDirectories(diskDir);
+            } catch (IOException e) {
+                throw new IllegalStateException("无法创建缓存目录: " + diskDir, e);
+            }
+        }
+    }
+    
+    /**
+     * 对话中是否调用过非确定性工具
+     */
+    public boolean isCacheable(List<Map<String, String>> messages) {
+        for (Map<String, String> message : messages) {
+            if (!"assistant".equals(message.get("role"))) {
+                continue;
+            }
+            String toolCalls = message.get(ChatMessages.TOOL_CALLS);
+            if (toolCalls != null && !deterministicToolCalls(toolCalls)) {
+                return false;
+            }
+            String content = message.get("content");
+            if (content != null) {
+                Matcher matcher = MARKER_TOOL_NAME.matcher(content);
+                while (matcher.find()) {
+                    if (!deterministicTools.contains(matcher.group(1).trim())) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 计算缓存键
+     * @param scope 区分同一对话的不同请求方式，例如原始响应和结构化响应
+     */
+    public String key(String provider, Map<String, Object> parameters, ArrayNode tools, String scope,
+                      List<Map<String, String>> messages) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        update(digest, provider);
+        update(digest, new TreeMap<>(parameters).toString());
+        update(digest, tools == null ? "" : tools.toString());
+        update(digest, scope);
+        for (Map<String, String> message : messages) {
+            update(digest, message.get("role"));
+            update(digest, normalize(message.get("content")));
+            String toolCalls = message.get(ChatMessages.TOOL_CALLS);
+            if (toolCalls != null) {
+                update(digest, normalizeToolCalls(toolCalls));
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+    
+    /**
+     * 查找结构化响应，命中时函数调用换上新的ID，避免同一对话里出现重复的 tool_call_id
+     */
+    public ChatResponse getResponse(String provider, String key) {
+        Cached cached = lookup(provider, key);
+        if (cached == null) {
+            return null;
+        }
+        List<ToolCall> toolCalls = new ArrayList<>();
+        for (ToolCall toolCall : cached.response.getToolCalls()) {
+            toolCalls.add(new ToolCall("cached_" + Long.toHexString(System.nanoTime()) + "_" + toolCalls.size(),
+                    toolCall.getName(), toolCall.getArguments()));
+        }
+        return new ChatResponse(cached.response.getContent(), toolCalls);
+    }
+    
+    public void putResponse(String key, ChatResponse response) {
+        if (response.getContent().isEmpty() && !response.hasToolCalls()) {
+            return;
+        }
+        store(key, new Cached(response, System.currentTimeMillis()));
+    }
+    
+    /**
+     * 记录一次因非确定性工具而跳过缓存的请求
+     */
+    public void recordBypass(String provider) {
+        stats(provider).bypassed.increment();
+    }
+    
+    private Cached lookup(String provider, String key) {
+        Stats providerStats = stats(provider);
+        Cached cached;
+        synchronized (memory) {
+            cached = memory.get(key);
+            if (cached != null && expired(cached)) {
+                memory.remove(key);
+                cached = null;
+            }
+        }
+        if (cached != null) {
+            providerStats.memoryHits.increment();
+            return cached;
+        }
+        cached = readDisk(key);
+        if (cached != null) {
+            providerStats.diskHits.increment();
+            putMemory(key, cached);
+            return cached;
+        }
+        providerStats.misses.increment();
+        return null;
+    }
+    
+    private void store(String key, Cached cached) {
+        putMemory(key, cached);
+        writeDisk(key, cached);
+    }
+    
+    private void putMemory(String key, Cached cached) {
+        synchronized (memory) {
+            memory.put(key, cached);
+            while (memory.size() > maxEntries) {
+                memory.remove(memory.keySet().iterator().next());
+            }
+        }
+    }
+    
+    private boolean expired(Cached cached) {
+        return System.currentTimeMillis() - cached.createdAt > ttlMillis;
+    }
+    
+    private Cached readDisk(String key) {
+        if (diskDir == null) {
+            return null;
+        }
+        Path file = diskDir.resolve(key + ".json");
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(file.toFile());
+            Cached cached = new Cached(readResponse(node), node.path("createdAt").asLong());
+            if (expired(cached) || !node.has("content")) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            return cached;
+        } catch (IOException e) {
+            System.err.println("读取响应缓存失败，忽略该条目: " + file + " - " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private void writeDisk(String key, Cached cached) {
+        if (diskDir == null) {
+            return;
+        }
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("createdAt", cached.createdAt);
+        node.put("content", cached.response.getContent());
+        ArrayNode toolCalls = node.putArray("toolCalls");
+        for (ToolCall toolCall : cached.response.getToolCalls()) {
+            toolCalls.addObject().put("name", toolCall.getName()).put("arguments", toolCall.getArguments());
+        }
+        Path file = diskDir.resolve(key + ".json");
+        Path temp = diskDir.resolve(key + ".json.tmp");
+        try {
+            Files.write(temp, objectMapper.writeValueAsBytes(node));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("写入响应缓存失败: " + file + " - " + e.getMessage());
+        }
+    }
+    
+    private static ChatResponse readResponse(JsonNode node) {
+        List<ToolCall> toolCalls = new ArrayList<>();
+        for (JsonNode toolCall : node.path("toolCalls")) {
+            toolCalls.add(new ToolCall(null, toolCall.path("name").asText(), toolCall.path("arguments").asText()));
+        }
+        return new ChatResponse(node.path("content").asText(), toolCalls);
+    }
+    
+    private boolean deterministicToolCalls(String toolCalls) {
+        try {
+            for (JsonNode toolCall : objectMapper.readTree(toolCalls)) {
+                if (!deterministicTools.contains(toolCall.path("function").path("name").asText())) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * 函数调用只保留名称和参数，ID每次都不同
+     */
+    private String normalizeToolCalls(String toolCalls) {
+        try {
+            StringBuilder normalized = new StringBuilder();
+            for (JsonNode toolCall : objectMapper.readTree(toolCalls)) {
+                JsonNode function = toolCall.path("function");
+                normalized.append(function.path("name").asText()).append('(');
+                String arguments = function.path("arguments").asText();
+                try {
+                    normalized.append(objectMapper.readTree(arguments));
+                } catch (IOException e) {
+                    normalized.append(normalize(arguments));
+                }
+                normalized.append(')');
+            }
+            return normalized.toString();
+        } catch (IOException e) {
+            return toolCalls;
+        }
+    }
+    
+    private static String normalize(String text) {
+        return text == null ? "" : WHITESPACE.matcher(text.trim()).replaceAll(" ");
+    }
+    
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        // 长度前缀避免不同字段拼接后产生相同的输入
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+    
+    private Stats stats(String provider) {
+        return stats.computeIfAbsent(provider, name -> new Stats());
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder("ChatResponseCache[");
+        synchronized (memory) {
+            summary.append("entries=").append(memory.size()).append('/').append(maxEntries);
+        }
+        summary.append(", disk=").append(diskDir == null ? "off" : diskDir.toString());
+        for (Map.Entry<String, Stats> entry : new TreeMap<>(stats).entrySet()) {
+            summary.append(", ").append(entry.getKey()).append('{').append(entry.getValue()).append('}');
+        }
+        return summary.append(']').toString();
+    }
+    
+    private static class Cached {
+        final ChatResponse response;
+        final long createdAt;
+        
+        Cached(ChatResponse response, long createdAt) {
+            this.response = response;
+            this.createdAt = createdAt;
+        }
+    }
+    
+    private static class Stats {
+        final LongAdder memoryHits = new LongAdder();
+        final LongAdder diskHits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder bypassed = new LongAdder();
+        
+        @Override
+        public String toString() {
+            long hits = memoryHits.sum() + diskHits.sum();
+            long lookups = hits + misses.sum();
+            String hitRate = lookups == 0 ? "-" : String.format("%.1f%%", hits * 100.0 / lookups);
+            return "hitRate=" + hitRate + ", memoryHits=" + memoryHits.sum() + ", diskHits=" + diskHits.sum()
+                    + ", misses=" + misses.sum() + ", bypassed=" + bypassed.sum();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package io.zhijian.tools.mcp.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OpenAI 兼容接口的非流式响应解析
+ * 用 JsonParser 直接从响应体的输入流中按需读取 choices[0].message 的 content、tool_calls 以及 usage，
+ * 其余字段（logprobs、内容过滤结果等）跳过，不构建完整的 JsonNode 树，也不先把响应体拼成字符串
+ */
+public class ChatResponseReader {
+    
+    private final JsonParser parser;
+    private boolean messageFound;
+    private String content;
+    private final List<ToolCall> toolCalls = new ArrayList<>();
+    private ChatResponse.Usage usage = ChatResponse.Usage.NONE;
+    
+    private ChatResponseReader(JsonParser parser) {
+        this.parser = parser;
+    }
+    
+    /**
+     * 读取整个响应体
+     * @return 回复文本、函数调用和token用量
+     */
+    public static ChatResponse read(InputStream body, ObjectMapper objectMapper) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            return new ChatResponseReader(parser).readResponse();
+        }
+    }
+    
+    private ChatResponse readResponse() throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("响应不是JSON对象");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("choices".equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+                readChoices();
+            } else if ("usage".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                readUsage();
+            } else if ("error".equals(field)) {
+                throw new IOException("响应返回错误: " + parser.readValueAsTree());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (!messageFound) {
+            return new ChatResponse("无法解析响应", List.of(), usage);
+        }
+        return new ChatResponse(content, toolCalls, usage);
+    }
+    
+    private void readChoices() throws IOException {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            // 只读取第一个候选回复
+            if (messageFound || parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("message".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                    messageFound = true;
+                    readMessage();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+    
+    private void readMessage() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("content".equals(field) && value == JsonToken.VALUE_STRING) {
+                content = parser.getText();
+            } else if (ChatMessages.TOOL_CALLS.equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    toolCalls.add(readToolCall());
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+    
+    private ToolCall readToolCall() throws IOException {
+        String id = "";
+        String name = "";
+        String arguments = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("id".equals(field) && value == JsonToken.VALUE_STRING) {
+                id = parser.getText();
+            } else if ("function".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String functionField = parser.getCurrentName();
+                    JsonToken functionValue = parser.nextToken();
+                    if ("name".equals(functionField) && functionValue == JsonToken.VALUE_STRING) {
+                        name = parser.getText();
+                    } else if ("arguments".equals(functionField) && functionValue == JsonToken.VALUE_STRING) {
+                        arguments = parser.getText();
+                    } else if ("arguments".equals(functionField) && functionValue == JsonToken.START_OBJECT) {
+                        // 个别兼容接口直接返回参数对象而不是JSON字符串
+                        arguments = parser.readValueAsTree().toString();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new ToolCall(id, name, arguments);
+    }
+    
+    private void readUsage() throws IOException {
+        int promptTokens = 0;
+        int completionTokens = 0;
+        int totalTokens = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value != JsonToken.VALUE_NUMBER_INT) {
+                parser.skipChildren();
+            } else if ("prompt_tokens".equals(field)) {
+                promptTokens = parser.getIntValue();
+            } else if ("completion_tokens".equals(field)) {
+                completionTokens = parser.getIntValue();
+            } else if ("total_tokens".equals(field)) {
+                totalTokens = parser.getIntValue();
+            }
+        }
+        usage = new ChatResponse.Usage(promptTokens, completionTokens, totalTokens);
+    }
+}
@@ -0,0 +1,143 @@
+package io.zhijian.tools.mcp.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * OpenAI 兼容接口的流式响应解析
+ * 逐行读取 server-sent events，解析每个 data 事件中的 choices[0].delta，直到 [DONE]；没有收到 [DONE] 时抛出 IOException
+ * delta.content 是增量文本；delta.tool_calls 是按 index 分片到达的函数调用，参数片段需要拼接；
+ * 提供方返回 usage 时一并读取
+ */
+public class ChatStreamReader {
+    
+    private static final String DATA_PREFIX = "data:";
+    private static final String DONE = "[DONE]";
+    
+    private ChatStreamReader() {}
+    
+    /**
+     * 读取整个事件流，增量文本实时交给监听器
+     * @return 拼接后的完整助手回复
+     */
+    public static String read(Stream<String> lines, ObjectMapper objectMapper, LLMStreamListener listener) throws IOException {
+        return readResponse(lines, objectMapper, listener).getContent();
+    }
+    
+    /**
+     * 读取整个事件流，增量文本实时交给监听器，每个函数调用的参数接收完整后回调 onToolCall
+     * @return 完整的回复文本和函数调用
+     */
+    public static ChatResponse readResponse(Stream<String> lines, ObjectMapper objectMapper, LLMStreamListener listener) throws IOException {
+        StringBuilder content = new StringBuilder();
+        List<PartialToolCall> toolCalls = new ArrayList<>();
+        int currentToolCall = -1;
+        ChatResponse.Usage usage = ChatResponse.Usage.NONE;
+        boolean done = false;
+        Iterator<String> iterator = lines.iterator();
+        while (iterator.hasNext()) {
+            String line = iterator.next();
+            if (!line.startsWith(DATA_PREFIX)) {
+                // 空行是事件分隔符，以冒号开头的是注释/心跳
+                continue;
+            }
+            String data = line.substring(DATA_PREFIX.length()).trim();
+            if (DONE.equals(data)) {
+                done = true;
+                break;
+            }
+            if (data.isEmpty()) {
+                continue;
+            }
+            
+            JsonNode event = objectMapper.readTree(data);
+            JsonNode error = event.get("error");
+            if (error != null) {
+                throw new IOException("流式响应返回错误: " + error);
+            }
+            // 提供方返回用量时放在最后一个事件里
+            JsonNode usageNode = event.get("usage");
+            if (usageNode != null && usageNode.isObject()) {
+                usage = new ChatResponse.Usage(usageNode.path("prompt_tokens").asInt(),
+                        usageNode.path("completion_tokens").asInt(), usageNode.path("total_tokens").asInt());
+            }
+            // Azure 会先发送不含 choices 的内容过滤结果事件
+            JsonNode choices = event.get("choices");
+            if (choices == null || choices.size() == 0) {
+                continue;
+            }
+            JsonNode delta = choices.get(0).get("delta");
+            if (delta == null) {
+                continue;
+            }
+            JsonNode token = delta.get("content");
+            if (token != null && !token.isNull() && token.asText().length() > 0) {
+                content.append(token.asText());
+                listener.onToken(token.asText());
+            }
+            JsonNode toolCallDeltas = delta.get(ChatMessages.TOOL_CALLS);
+            if (toolCallDeltas == null) {
+                continue;
+            }
+            for (JsonNode toolCallDelta : toolCallDeltas) {
+                int index = toolCallDelta.path("index").asInt(toolCalls.size());
+                if (index != currentToolCall) {
+                    // 函数调用按顺序生成，开始下一个说明上一个的参数已经完整
+                    if (currentToolCall >= 0) {
+                        listener.onToolCall(toolCalls.get(currentToolCall).build());
+                    }
+                    currentToolCall = index;
+                }
+                while (toolCalls.size() <= index) {
+                    toolCalls.add(new PartialToolCall());
+                }
+                toolCalls.get(index).append(toolCallDelta);
+            }
+        }
+        // 连接中途断开时流在 [DONE] 之前结束，已收到的内容不完整，不能当作成功的回复
+        if (!done) {
+            throw new IOException("流式响应在 [DONE] 之前结束，回复不完整");
+        }
+        if (currentToolCall >= 0) {
+            listener.onToolCall(toolCalls.get(currentToolCall).build());
+        }
+        
+        List<ToolCall> completed = new ArrayList<>();
+        for (PartialToolCall toolCall : toolCalls) {
+            completed.add(toolCall.build());
+        }
+        return new ChatResponse(content.toString(), completed, usage);
+    }
+    
+    private static class PartialToolCall {
+        private String id;
+        private String name;
+        private final StringBuilder arguments = new StringBuilder();
+        
+        void append(JsonNode delta) {
+            if (delta.hasNonNull("id")) {
+                id = delta.get("id").asText();
+            }
+            JsonNode function = delta.get("function");
+            if (function == null) {
+                return;
+            }
+            if (function.hasNonNull("name")) {
+                name = function.get("name").asText();
+            }
+            if (function.hasNonNull("arguments")) {
+                arguments.append(function.get("arguments").asText());
+            }
+        }
+        
+        ToolCall build() {
+            return new ToolCall(id, name, arguments.toString());
+        }
+    }
+}
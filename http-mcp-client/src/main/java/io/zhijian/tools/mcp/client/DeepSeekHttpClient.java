@@ -3,30 +3,40 @@ package io.zhijian.tools.mcp.client;
 import io.zhijian.tools.mcp.config.DeepSeekConfig;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 简单的DeepSeek HTTP客户端，不依赖Spring Boot
  */
 public class DeepSeekHttpClient implements LLMClient {
     
-    private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
+    private final ChatRequestEncoder requestEncoder;
     
     public DeepSeekHttpClient() {
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(60 * 2))
-                .build();
         this.objectMapper = new ObjectMapper();
+        
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("model", DeepSeekConfig.MODEL);
+        parameters.put("temperature", DeepSeekConfig.TEMPERATURE);
+        parameters.put("max_tokens", DeepSeekConfig.MAX_TOKENS);
+        parameters.put("top_p", DeepSeekConfig.TOP_P);
+        parameters.put("top_k", DeepSeekConfig.TOP_K);
+        parameters.put("frequency_penalty", DeepSeekConfig.FREQUENCY_PENALTY);
+        this.requestEncoder = new ChatRequestEncoder(objectMapper, parameters);
     }
     
     @Override
@@ -34,49 +44,90 @@ public class DeepSeekHttpClient implements LLMClient {
         return "DeepSeek";
     }
     
+    @Override
+    public URI getEndpoint() {
+        return URI.create(DeepSeekConfig.getFullUrl());
+    }
+    
+    @Override
+    public Map<String, Object> getModelParameters() {
+        return requestEncoder.getParameters();
+    }
+    
     /**
      * 发送聊天请求到DeepSeek API
      * @param messages 消息列表，格式：[{"role": "user", "content": "你好"}]
-     * @return API响应
+     * @return 回复文本、函数调用和token用量
      */
-    public String chat(List<Map<String, String>> messages) throws IOException, InterruptedException {
-        // 构建请求体
-        ObjectNode requestBody = objectMapper.createObjectNode();
-        requestBody.put("model", DeepSeekConfig.MODEL);
-        requestBody.put("temperature", DeepSeekConfig.TEMPERATURE);
-        requestBody.put("max_tokens", DeepSeekConfig.MAX_TOKENS);
-        requestBody.put("top_p", DeepSeekConfig.TOP_P);
-        requestBody.put("top_k", DeepSeekConfig.TOP_K);
-        requestBody.put("frequency_penalty", DeepSeekConfig.FREQUENCY_PENALTY);
+    @Override
+    public ChatResponse chat(List<Map<String, String>> messages) throws IOException, InterruptedException {
+        return chat(messages, null);
+    }
+    
+    /**
+     * 发送带函数定义的聊天请求，解析回复文本、函数调用和token用量
+     */
+    @Override
+    public ChatResponse chat(List<Map<String, String>> messages, ArrayNode tools) throws IOException, InterruptedException {
+        return send(requestEncoder.encode(messages, tools, false));
+    }
+    
+    /**
+     * 发送流式聊天请求，逐行解析 SSE 增量
+     */
+    @Override
+    public String chatStream(List<Map<String, String>> messages, LLMStreamListener listener) throws IOException, InterruptedException {
+        return chatStream(messages, null, listener).getContent();
+    }
+    
+    /**
+     * 发送带函数定义的流式聊天请求，函数调用的参数片段在流中拼接
+     */
+    @Override
+    public ChatResponse chatStream(List<Map<String, String>> messages, ArrayNode tools,
+                                   LLMStreamListener listener) throws IOException, InterruptedException {
+        PooledRequestBody body = requestEncoder.encode(messages, tools, true);
+        HttpRequest request = createRequest(body, true);
         
-        // 添加消息
-        ArrayNode messagesArray = objectMapper.createArrayNode();
-        for (Map<String, String> message : messages) {
-            ObjectNode messageNode = objectMapper.createObjectNode();
-            messageNode.put("role", message.get("role"));
-            messageNode.put("content", message.get("content"));
-            messagesArray.add(messageNode);
+        try {
+            HttpResponse<Stream<String>> response = LLMTransport.shared().send(request, HttpResponse.BodyHandlers.ofLines());
+            
+            try (Stream<String> lines = response.body()) {
+                if (response.statusCode() != 200) {
+                    throw new RuntimeException("HTTP请求失败，状态码: " + response.statusCode() + "，响应: "
+                            + lines.collect(Collectors.joining("\n")));
+                }
+                ChatResponse result = ChatStreamReader.readResponse(lines, objectMapper, listener);
+                body.release();
+                return result;
+            }
+        } catch (java.net.http.HttpTimeoutException e) {
+            throw new RuntimeException("DeepSeek请求超时: " + e.getMessage(), e);
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("DeepSeek流式请求网络异常: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("DeepSeek请求被中断: " + e.getMessage(), e);
         }
-        requestBody.set("messages", messagesArray);
-        
-        // 创建HTTP请求
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(DeepSeekConfig.getFullUrl()))
-                .header("Authorization", "Bearer " + DeepSeekConfig.CREDENTIAL)
-                .header("Content-Type", "application/json")
-                .timeout(Duration.ofMinutes(1))
-                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requestBody)))
-                .build();
+    }
+    
+    private ChatResponse send(PooledRequestBody body) {
+        HttpRequest request = createRequest(body, false);
         
-        // 发送请求
+        // 发送请求，响应体边接收边解析
         try {
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<InputStream> response = LLMTransport.shared().send(request, HttpResponse.BodyHandlers.ofInputStream());
             
-            if (response.statusCode() != 200) {
-                throw new RuntimeException("HTTP请求失败，状态码: " + response.statusCode() + "，响应: " + response.body());
+            try (InputStream responseBody = response.body()) {
+                if (response.statusCode() != 200) {
+                    throw new RuntimeException("HTTP请求失败，状态码: " + response.statusCode() + "，响应: " + new String(responseBody.readAllBytes(), StandardCharsets.UTF_8));
+                }
+                
+                ChatResponse result = ChatResponseReader.read(responseBody, objectMapper);
+                // 响应完整收到时请求体已经发送完毕，缓冲区可以回收；失败时不回收
+                body.release();
+                return result;
             }
-            
-            return response.body();
         } catch (java.net.http.HttpTimeoutException e) {
             throw new RuntimeException("DeepSeek请求超时: " + e.getMessage(), e);
         } catch (IOException e) {
@@ -88,29 +139,17 @@ public class DeepSeekHttpClient implements LLMClient {
     }
     
     /**
-     * 简单的聊天方法，接收单条用户消息
-     * @param userMessage 用户消息
-     * @return API响应
+     * @param body 已编码的请求体：系统提示和 tools 在多次请求之间复用已编码的JSON
      */
-    public String chat(String userMessage) throws IOException, InterruptedException {
-        return chat(List.of(Map.of("role", "user", "content", userMessage)));
-    }
-    
-    /**
-     * 从API响应中提取助手回复内容
-     * @param apiResponse API完整响应
-     * @return 助手回复的文本内容
-     */
-    public String extractAssistantMessage(String apiResponse) throws IOException {
-        ObjectNode responseNode = (ObjectNode) objectMapper.readTree(apiResponse);
-        ArrayNode choices = (ArrayNode) responseNode.get("choices");
-        if (choices != null && choices.size() > 0) {
-            ObjectNode firstChoice = (ObjectNode) choices.get(0);
-            ObjectNode message = (ObjectNode) firstChoice.get("message");
-            if (message != null) {
-                return message.get("content").asText();
-            }
-        }
-        return "无法解析响应";
+    private HttpRequest createRequest(PooledRequestBody body, boolean stream) {
+        // 创建HTTP请求
+        return HttpRequest.newBuilder()
+                .uri(URI.create(DeepSeekConfig.getFullUrl()))
+                .header("Authorization", "Bearer " + DeepSeekConfig.CREDENTIAL)
+                .header("Content-Type", "application/json")
+                .header("Accept", stream ? "text/event-stream" : "application/json")
+                .timeout(Duration.ofMinutes(1))
+                .POST(body.toBodyPublisher())
+                .build();
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -1,5 +1,8 @@
 package io.zhijian.tools.mcp.client;
 
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import java.net.URI;
 import java.util.List;
 import java.util.Map;
 
@@ -11,23 +14,67 @@ public interface LLMClient {
     /**
      * 发送聊天请求
      * @param messages 消息列表
-     * @return API响应
+     * @return 回复文本、函数调用和token用量
      */
-    String chat(List<Map<String, String>> messages) throws Exception;
+    default ChatResponse chat(List<Map<String, String>> messages) throws Exception {
+        return chat(messages, null);
+    }
     
     /**
      * 发送单条消息
      * @param userMessage 用户消息
-     * @return API响应
+     * @return 助手回复的文本内容
      */
-    String chat(String userMessage) throws Exception;
+    default String chat(String userMessage) throws Exception {
+        return chat(List.of(Map.of("role", "user", "content", userMessage))).getContent();
+    }
     
     /**
-     * 从API响应中提取助手回复内容
-     * @param apiResponse API完整响应
-     * @return 助手回复的文本内容
+     * 发送带函数定义的聊天请求，返回回复文本、原生函数调用和token用量
+     * @param messages 消息列表，可以包含 tool_calls 助手消息和 tool 结果消息（见 ChatMessages）
+     * @param tools 函数定义数组，为空时不发送
+     */
+    ChatResponse chat(List<Map<String, String>> messages, ArrayNode tools) throws Exception;
+    
+    /**
+     * 发送流式聊天请求，增量文本到达时立即回调监听器
+     * @param messages 消息列表
+     * @param listener 增量文本监听器
+     * @return 完整的助手回复文本
+     */
+    default String chatStream(List<Map<String, String>> messages, LLMStreamListener listener) throws Exception {
+        return chatStream(messages, null, listener).getContent();
+    }
+    
+    /**
+     * 发送带函数定义的流式聊天请求，增量文本和完整的函数调用实时回调监听器
+     * 默认实现退化为一次性请求，整段回复作为一个增量回调
+     */
+    default ChatResponse chatStream(List<Map<String, String>> messages, ArrayNode tools,
+                                    LLMStreamListener listener) throws Exception {
+        ChatResponse response = chat(messages, tools);
+        if (!response.getContent().isEmpty()) {
+            listener.onToken(response.getContent());
+        }
+        for (ToolCall toolCall : response.getToolCalls()) {
+            listener.onToolCall(toolCall);
+        }
+        return response;
+    }
+    
+    /**
+     * 影响回复内容的模型参数，用于区分缓存条目
+     */
+    default Map<String, Object> getModelParameters() {
+        return Map.of();
+    }
+    
+    /**
+     * 提供方的API地址，用于启动时预热连接；未知时返回 null
      */
-    String extractAssistantMessage(String apiResponse) throws Exception;
+    default URI getEndpoint() {
+        return null;
+    }
     
     /**
      * 获取客户端名称
@@ -1,31 +1,62 @@
 package io.zhijian.tools.mcp.client;
 
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import io.zhijian.tools.mcp.config.LLMCacheConfig;
+import io.zhijian.tools.mcp.config.LLMRoutingConfig;
 import io.zhijian.tools.mcp.console.ConsoleUI;
 
+import java.net.URI;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * LLM客户端管理器
- * 负责管理多个LLM客户端，并在一个客户端失败时自动切换到另一个
+ * 负责管理多个LLM客户端：每个请求由 ProviderRouter 按延迟和健康状态选择提供方，失败时自动切换到下一个。
+ * 管理器本身不保存“当前客户端”，可以被多个对话并发使用
  */
 public class LLMClientManager implements LLMClient {
     
     private final List<LLMClient> clients;
-    private int currentClientIndex = 0;
-    private ConsoleUI ui;
+    private final ProviderRouter router;
+    private final RequestHedger hedger;
+    private final ConsoleUI ui;
+    private final ChatResponseCache responseCache;
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder completionTokens = new LongAdder();
     
     public LLMClientManager() {
-        this.clients = new ArrayList<>();
-        // 添加可用的LLM客户端
-        this.clients.add(new DeepSeekHttpClient());
-        this.clients.add(new AzureOpenAIClient());
+        this(null);
     }
     
     public LLMClientManager(ConsoleUI ui) {
-        this();
         this.ui = ui;
+        this.responseCache = LLMCacheConfig.ENABLED
+                ? new ChatResponseCache(LLMCacheConfig.MAX_ENTRIES, LLMCacheConfig.TTL_SECONDS * 1000,
+                        LLMCacheConfig.DISK_DIR.isEmpty() ? null : Paths.get(LLMCacheConfig.DISK_DIR),
+                        LLMCacheConfig.DETERMINISTIC_TOOLS)
+                : null;
+        this.clients = new ArrayList<>();
+        // 添加可用的LLM客户端，启用缓存时每个客户端外包一层响应缓存
+        this.clients.add(withCache(new DeepSeekHttpClient()));
+        this.clients.add(withCache(new AzureOpenAIClient()));
+        this.router = new ProviderRouter(clients, LLMRoutingConfig.EWMA_ALPHA, LLMRoutingConfig.FAILURE_THRESHOLD,
+                LLMRoutingConfig.OPEN_SECONDS * 1000);
+        this.hedger = LLMRoutingConfig.HEDGING_ENABLED
+                ? new RequestHedger(LLMRoutingConfig.HEDGING_PERCENTILE, LLMRoutingConfig.HEDGING_MIN_SAMPLES,
+                        LLMRoutingConfig.HEDGING_MIN_DELAY_MS, LLMRoutingConfig.HEDGING_BUDGET_RATIO,
+                        LLMRoutingConfig.HEDGING_BUDGET_BURST)
+                : null;
+    }
+    
+    private LLMClient withCache(LLMClient client) {
+        return responseCache != null ? new CachingLLMClient(client, responseCache, ui) : client;
     }
     
     @Override
@@ -34,52 +65,189 @@ public class LLMClientManager implements LLMClient {
     }
     
     /**
-     * 发送聊天请求，如果当前客户端失败则自动切换到下一个
+     * 发送聊天请求，如果选中的客户端失败则自动切换到下一个
+     */
+    @Override
+    public ChatResponse chat(List<Map<String, String>> messages, ArrayNode tools) throws Exception {
+        return recordUsage(withFailover(client -> client.chat(messages, tools)));
+    }
+    
+    /**
+     * 发送流式聊天请求
+     * 只有在还没有收到任何增量（文本或函数调用）时才切换到下一个客户端；已经输出过内容后失败则直接抛出，避免重复输出
      */
     @Override
-    public String chat(List<Map<String, String>> messages) throws Exception {
+    public ChatResponse chatStream(List<Map<String, String>> messages, ArrayNode tools,
+                                   LLMStreamListener listener) throws Exception {
+        return recordUsage(withStreamFailover(listener, (client, tracked) -> client.chatStream(messages, tools, tracked)));
+    }
+    
+    private ChatResponse recordUsage(ChatResponse response) {
+        ChatResponse.Usage usage = response.getUsage();
+        promptTokens.add(usage.getPromptTokens());
+        completionTokens.add(usage.getCompletionTokens());
+        return response;
+    }
+    
+    private <T> T withFailover(ClientCall<T> call) throws Exception {
         Exception lastException = null;
         
-        // 尝试所有可用的客户端
-        for (int attempt = 0; attempt < clients.size(); attempt++) {
-            LLMClient currentClient = clients.get(currentClientIndex);
-            
+        // 按路由顺序尝试健康的客户端，启用对冲时主提供方较慢会提前把请求发给下一个
+        Iterator<ProviderHealth> providers = attempts().iterator();
+        while (providers.hasNext()) {
+            ProviderHealth provider = providers.next();
             try {
-                if (ui != null) {
-                    ui.logLLM("尝试使用 " + currentClient.getClientName() + " 发送请求...");
-                } else {
-                    System.out.println("尝试使用 " + currentClient.getClientName() + " 发送请求...");
-                }
-                return currentClient.chat(messages);
+                return hedger != null
+                        ? hedger.call(provider, providers, candidate -> invoke(candidate, call))
+                        : invoke(provider, call);
             } catch (Exception e) {
                 lastException = e;
-                String errorMsg = currentClient.getClientName() + " 请求失败: " + e.getMessage();
+            }
+        }
+        
+        throw allClientsFailed(lastException);
+    }
+    
+    /**
+     * 向单个提供方发送请求并记录其延迟和健康状态
+     * 对冲中落败而被取消的请求不计入失败
+     */
+    private <T> T invoke(ProviderHealth provider, ClientCall<T> call) throws Exception {
+        LLMClient client = provider.getClient();
+        long start = System.nanoTime();
+        
+        try {
+            logInfo("尝试使用 " + client.getClientName() + " 发送请求...");
+            T result = call.apply(client);
+            provider.recordSuccess(elapsedMillis(start));
+            return result;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException || Thread.currentThread().isInterrupted()) {
+                provider.recordCancelled();
+                logInfo(client.getClientName() + " 的请求已取消");
+                throw e;
+            }
+            provider.recordFailure(elapsedMillis(start));
+            String errorMsg = client.getClientName() + " 请求失败: " + e.getMessage();
+            
+            if (ui != null) {
+                ui.logError(errorMsg);
+                // 如果是配置错误，给出更详细的提示
+                String message = String.valueOf(e.getMessage());
+                if (message.contains("Authentication") || message.contains("api key")) {
+                    ui.logWarning("请检查 " + client.getClientName() + " 的API密钥配置");
+                } else if (message.contains("max_tokens")) {
+                    ui.logWarning("请检查 " + client.getClientName() + " 的max_tokens参数配置");
+                }
+            } else {
+                System.err.println(errorMsg);
+            }
+            throw e;
+        }
+    }
+    
+    private <T> T withStreamFailover(LLMStreamListener listener, StreamCall<T> call) throws Exception {
+        Exception lastException = null;
+        
+        for (ProviderHealth provider : attempts()) {
+            LLMClient client = provider.getClient();
+            long start = System.nanoTime();
+            // 流式请求以首个增量的延迟作为提供方延迟
+            long[] firstDelta = {-1};
+            LLMStreamListener tracked = new LLMStreamListener() {
+                @Override
+                public void onToken(String token) {
+                    markFirstDelta();
+                    listener.onToken(token);
+                }
                 
+                @Override
+                public void onToolCall(ToolCall toolCall) {
+                    markFirstDelta();
+                    listener.onToolCall(toolCall);
+                }
+                
+                private void markFirstDelta() {
+                    if (firstDelta[0] < 0) {
+                        firstDelta[0] = elapsedMillis(start);
+                    }
+                }
+            };
+            
+            try {
+                logInfo("尝试使用 " + client.getClientName() + " 发送流式请求...");
+                T result = call.apply(client, tracked);
+                provider.recordStreamSuccess(firstDelta[0] >= 0 ? firstDelta[0] : elapsedMillis(start));
+                return result;
+            } catch (Exception e) {
+                provider.recordFailure(elapsedMillis(start));
+                lastException = e;
+                String errorMsg = client.getClientName() + " 流式请求失败: " + e.getMessage();
                 if (ui != null) {
                     ui.logError(errorMsg);
-                    // 如果是配置错误，给出更详细的提示
-                    if (e.getMessage().contains("Authentication") || e.getMessage().contains("api key")) {
-                        ui.logWarning("请检查 " + currentClient.getClientName() + " 的API密钥配置");
-                    } else if (e.getMessage().contains("max_tokens")) {
-                        ui.logWarning("请检查 " + currentClient.getClientName() + " 的max_tokens参数配置");
-                    }
                 } else {
                     System.err.println(errorMsg);
                 }
-                
-                // 切换到下一个客户端
-                currentClientIndex = (currentClientIndex + 1) % clients.size();
-                
-                if (attempt < clients.size() - 1) {
-                    if (ui != null) {
-                        ui.logLLM("切换到 " + clients.get(currentClientIndex).getClientName());
-                    } else {
-                        System.out.println("切换到 " + clients.get(currentClientIndex).getClientName());
-                    }
+                if (firstDelta[0] >= 0) {
+                    throw e;
                 }
             }
         }
         
+        throw allClientsFailed(lastException);
+    }
+    
+    /**
+     * 本次请求依次尝试的提供方
+     * 熔断打开的提供方会被跳过；如果所有提供方都处于熔断状态，则忽略熔断按路由顺序全部尝试一遍，而不是直接失败
+     */
+    private Iterable<ProviderHealth> attempts() {
+        List<ProviderHealth> candidates = router.candidates();
+        return () -> new Iterator<ProviderHealth>() {
+            private int index;
+            private boolean anyAcquired;
+            private boolean forced;
+            private ProviderHealth next;
+            
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (index == candidates.size()) {
+                        if (anyAcquired || forced) {
+                            return false;
+                        }
+                        forced = true;
+                        index = 0;
+                        logInfo("所有LLM客户端都处于熔断状态，忽略熔断重试");
+                    }
+                    ProviderHealth candidate = candidates.get(index++);
+                    if (forced || candidate.tryAcquire()) {
+                        anyAcquired = true;
+                        next = candidate;
+                    } else {
+                        logInfo("跳过熔断中的 " + candidate.getClient().getClientName());
+                    }
+                }
+                return true;
+            }
+            
+            @Override
+            public ProviderHealth next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ProviderHealth current = next;
+                next = null;
+                return current;
+            }
+        };
+    }
+    
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+    
+    private RuntimeException allClientsFailed(Exception lastException) {
         // 所有客户端都失败了
         String finalError = "所有LLM客户端都失败了。请检查：\n" +
                 "1. API密钥是否正确配置\n" +
@@ -90,32 +258,49 @@ public class LLMClientManager implements LLMClient {
             ui.logError(finalError);
         }
         
-        throw new RuntimeException(finalError, lastException);
+        return new RuntimeException(finalError, lastException);
+    }
+    
+    private void logInfo(String message) {
+        if (ui != null) {
+            ui.logLLM(message);
+        } else {
+            System.out.println(message);
+        }
     }
     
     /**
-     * 发送单条消息
+     * 在后台预热到各提供方的连接，第一次提问不必等待DNS解析和TLS握手
      */
-    @Override
-    public String chat(String userMessage) throws Exception {
-        return chat(List.of(Map.of("role", "user", "content", userMessage)));
+    public CompletableFuture<Void> prewarm() {
+        List<URI> endpoints = new ArrayList<>();
+        for (LLMClient client : clients) {
+            endpoints.add(client.getEndpoint());
+        }
+        return LLMTransport.shared().prewarm(endpoints);
     }
     
     /**
-     * 从API响应中提取助手回复内容
+     * 请求统计，包括各提供方的路由健康状态、连接耗时、对冲请求、token用量和响应缓存命中率
      */
-    @Override
-    public String extractAssistantMessage(String apiResponse) throws Exception {
-        // 使用当前活跃的客户端来解析响应
-        LLMClient currentClient = clients.get(currentClientIndex);
-        return currentClient.extractAssistantMessage(apiResponse);
+    public String describeStatistics() {
+        StringBuilder statistics = new StringBuilder();
+        statistics.append(router).append('\n');
+        statistics.append(LLMTransport.shared()).append('\n');
+        if (hedger != null) {
+            statistics.append(hedger).append('\n');
+        }
+        statistics.append("TokenUsage{prompt=").append(promptTokens.sum())
+                .append(", completion=").append(completionTokens.sum()).append("}\n");
+        statistics.append(responseCache != null ? responseCache.toString() : "响应缓存未启用");
+        return statistics.toString();
     }
     
     /**
-     * 获取当前活跃的客户端
+     * 获取路由当前首选的客户端
      */
     public LLMClient getCurrentClient() {
-        return clients.get(currentClientIndex);
+        return router.candidates().get(0).getClient();
     }
     
     /**
@@ -126,12 +311,22 @@ public class LLMClientManager implements LLMClient {
     }
     
     /**
-     * 手动切换到指定的客户端
+     * 手动指定首选客户端，该客户端熔断期间仍按健康状态路由
      */
     public void switchToClient(int index) {
         if (index >= 0 && index < clients.size()) {
-            currentClientIndex = index;
-            System.out.println("手动切换到 " + clients.get(currentClientIndex).getClientName());
+            router.prefer(index);
+            System.out.println("手动切换到 " + clients.get(index).getClientName());
         }
     }
-} 
\ No newline at end of file
+    
+    @FunctionalInterface
+    private interface ClientCall<T> {
+        T apply(LLMClient client) throws Exception;
+    }
+    
+    @FunctionalInterface
+    private interface StreamCall<T> {
+        T apply(LLMClient client, LLMStreamListener listener) throws Exception;
+    }
+}
@@ -0,0 +1,22 @@
+package io.zhijian.tools.mcp.client;
+
+/**
+ * 流式响应监听器
+ * 每收到一段增量文本回调一次
+ */
+@FunctionalInterface
+public interface LLMStreamListener {
+    
+    /**
+     * 收到增量文本
+     * @param token 本次增量内容
+     */
+    void onToken(String token);
+    
+    /**
+     * 一个原生函数调用的参数接收完整，此时后续内容可能仍在生成
+     * @param toolCall 完整的函数调用
+     */
+    default void onToolCall(ToolCall toolCall) {
+    }
+}
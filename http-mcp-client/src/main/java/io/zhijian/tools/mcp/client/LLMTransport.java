@@ -0,0 +1,172 @@
+package io.zhijian.tools.mcp.client;
+
+import io.zhijian.tools.mcp.config.LLMTransportConfig;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LLM HTTP传输层
+ * 所有LLM客户端共用一个 HttpClient（HTTP/2 多路复用、可配置的执行线程），连接池因此在客户端实例之间共享。
+ * 每个请求记录到响应头到达（首字节）的耗时；java.net.http 不暴露单次请求的DNS、连接和TLS阶段，
+ * 这几个阶段在预热时测量：DNS解析单独计时，预热请求的耗时即为建立连接（含TLS握手）的耗时
+ */
+public class LLMTransport {
+    
+    private static final LLMTransport SHARED = new LLMTransport();
+    
+    private final HttpClient httpClient;
+    private final Map<String, HostTimings> timings = new ConcurrentHashMap<>();
+    
+    private LLMTransport() {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.valueOf(LLMTransportConfig.HTTP_VERSION))
+                .connectTimeout(Duration.ofSeconds(LLMTransportConfig.CONNECT_TIMEOUT_SECONDS));
+        if (LLMTransportConfig.EXECUTOR_THREADS > 0) {
+            AtomicInteger threadCount = new AtomicInteger();
+            builder.executor(Executors.newFixedThreadPool(LLMTransportConfig.EXECUTOR_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "llm-http-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }));
+        }
+        this.httpClient = builder.build();
+    }
+    
+    public static LLMTransport shared() {
+        return SHARED;
+    }
+    
+    /**
+     * 发送请求并记录首字节耗时；流式响应在响应头到达时返回，响应体由调用方继续读取
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        HostTimings host = timings(request.uri());
+        long start = System.nanoTime();
+        try {
+            return httpClient.send(request, responseInfo -> {
+                host.recordFirstByte(elapsedMillis(start), responseInfo.version());
+                return handler.apply(responseInfo);
+            });
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            host.failures.increment();
+            throw e;
+        }
+    }
+    
+    /**
+     * 预热到各端点的连接：解析域名并发送一个轻量请求，建立的连接（包括TLS会话）留在连接池中供后续请求复用
+     * 任何响应状态码都说明连接已建立；预热失败不影响正常请求
+     * @return 所有预热请求完成（无论成败）时完成
+     */
+    public CompletableFuture<Void> prewarm(Collection<URI> endpoints) {
+        Set<String> origins = new LinkedHashSet<>();
+        CompletableFuture<?>[] warmups = endpoints.stream()
+                .filter(uri -> uri != null && uri.getHost() != null && origins.add(origin(uri)))
+                .map(uri -> CompletableFuture.runAsync(() -> prewarm(uri)))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(warmups);
+    }
+    
+    private void prewarm(URI uri) {
+        HostTimings host = timings(uri);
+        try {
+            long dnsStart = System.nanoTime();
+            InetAddress.getAllByName(uri.getHost());
+            host.dnsMillis = elapsedMillis(dnsStart);
+            
+            HttpRequest request = HttpRequest.newBuilder(URI.create(origin(uri) + "/"))
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .timeout(Duration.ofSeconds(LLMTransportConfig.CONNECT_TIMEOUT_SECONDS))
+                    .build();
+            long connectStart = System.nanoTime();
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            host.connectMillis = elapsedMillis(connectStart);
+            host.version = response.version();
+        } catch (UnknownHostException e) {
+            host.prewarmError = "DNS解析失败: " + e.getMessage();
+        } catch (IOException | RuntimeException e) {
+            host.prewarmError = e.getClass().getSimpleName() + ": " + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private HostTimings timings(URI uri) {
+        return timings.computeIfAbsent(origin(uri), HostTimings::new);
+    }
+    
+    private static String origin(URI uri) {
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+    
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder("LLMTransport[");
+        int index = 0;
+        for (HostTimings host : timings.values()) {
+            if (index++ > 0) {
+                summary.append(", ");
+            }
+            summary.append(host);
+        }
+        return summary.append(']').toString();
+    }
+    
+    /**
+     * 单个主机的耗时统计
+     */
+    private static class HostTimings {
+        
+        private final String origin;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder firstByteTotal = new LongAdder();
+        private volatile long dnsMillis = -1;
+        private volatile long connectMillis = -1;
+        private volatile HttpClient.Version version;
+        private volatile String prewarmError;
+        
+        HostTimings(String origin) {
+            this.origin = origin;
+        }
+        
+        void recordFirstByte(long millis, HttpClient.Version negotiated) {
+            requests.increment();
+            firstByteTotal.add(millis);
+            version = negotiated;
+        }
+        
+        @Override
+        public String toString() {
+            long count = requests.sum();
+            return origin + "{" + (version != null ? version : "未连接")
+                    + ", dns=" + (dnsMillis < 0 ? "-" : dnsMillis + "ms")
+                    + ", connect=" + (connectMillis < 0 ? "-" : connectMillis + "ms")
+                    + ", requests=" + count + ", failures=" + failures.sum()
+                    + ", avgFirstByte=" + (count == 0 ? "-" : firstByteTotal.sum() / count + "ms")
+                    + (prewarmError != null ? ", prewarmError=" + prewarmError : "") + "}";
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package io.zhijian.tools.mcp.client;
+
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 写入池化缓冲区的请求体
+ * JsonGenerator 直接写进从缓冲池取出的 ByteBuffer，写完后以 Flow.Publisher 的形式交给 HttpClient，
+ * 发布的是同一块内存的只读视图，请求体不再经过 byte[] 拷贝；HttpClient 重试时可以重新订阅。
+ * 响应完整收到后调用 release() 把缓冲区还给缓冲池；请求失败时不回收，
+ * 避免 HttpClient 仍在写出的缓冲区被下一个请求复用，这些缓冲区交给GC
+ */
+public class PooledRequestBody extends OutputStream implements Flow.Publisher<ByteBuffer> {
+    
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_POOLED_BUFFERS = 256;
+    
+    private static final Queue<ByteBuffer> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+    
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+    private ByteBuffer current;
+    private long length;
+    private boolean released;
+    
+    @Override
+    public void write(int b) {
+        ensureWritable().put((byte) b);
+        length++;
+    }
+    
+    @Override
+    public void write(byte[] bytes, int offset, int count) {
+        while (count > 0) {
+            ByteBuffer buffer = ensureWritable();
+            int chunk = Math.min(count, buffer.remaining());
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+            count -= chunk;
+            length += chunk;
+        }
+    }
+    
+    private ByteBuffer ensureWritable() {
+        if (released) {
+            throw new IllegalStateException("请求体已释放");
+        }
+        if (current == null || !current.hasRemaining()) {
+            current = acquire();
+            buffers.add(current);
+        }
+        return current;
+    }
+    
+    public long contentLength() {
+        return length;
+    }
+    
+    /**
+     * 作为 HttpRequest 的请求体，长度已知，HTTP/1.1 下以 Content-Length 而不是分块方式发送
+     */
+    public HttpRequest.BodyPublisher toBodyPublisher() {
+        return HttpRequest.BodyPublishers.fromPublisher(this, length);
+    }
+    
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        List<ByteBuffer> views = new ArrayList<>(buffers.size());
+        for (ByteBuffer buffer : buffers) {
+            ByteBuffer view = buffer.asReadOnlyBuffer();
+            view.flip();
+            views.add(view);
+        }
+        subscriber.onSubscribe(new BufferSubscription(subscriber, views));
+    }
+    
+    /**
+     * 把缓冲区还给缓冲池，只能在响应完整收到之后调用
+     */
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        for (ByteBuffer buffer : buffers) {
+            if (POOLED.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+                buffer.clear();
+                POOL.offer(buffer);
+            } else {
+                POOLED.decrementAndGet();
+            }
+        }
+        buffers.clear();
+        current = null;
+    }
+    
+    private static ByteBuffer acquire() {
+        ByteBuffer buffer = POOL.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        POOLED.decrementAndGet();
+        return buffer;
+    }
+    
+    /**
+     * 按订阅者的请求量依次发布缓冲区，onNext 中再次 request 时不会递归
+     */
+    private static class BufferSubscription implements Flow.Subscription {
+        
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final List<ByteBuffer> views;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private int next;
+        private boolean completed;
+        
+        BufferSubscription(Flow.Subscriber<? super ByteBuffer> subscriber, List<ByteBuffer> views) {
+            this.subscriber = subscriber;
+            this.views = views;
+        }
+        
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancelled = true;
+                subscriber.onError(new IllegalArgumentException("request 数量必须为正数: " + n));
+                return;
+            }
+            demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            drain();
+        }
+        
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+        
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!cancelled && next < views.size() && demand.get() > 0) {
+                    demand.decrementAndGet();
+                    subscriber.onNext(views.get(next++));
+                }
+                if (!cancelled && !completed && next == views.size()) {
+                    completed = true;
+                    subscriber.onComplete();
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package io.zhijian.tools.mcp.client;
+
+import java.util.Arrays;
+
+/**
+ * 单个LLM提供方的健康状态
+ * 记录延迟和错误率的指数加权平均（EWMA），并维护熔断器：
+ * 连续失败达到阈值后打开，打开期间不再路由请求；超过打开时长后进入半开状态，只放行一个试探请求，
+ * 试探成功则关闭，失败则重新打开。所有方法都是线程安全的
+ */
+public class ProviderHealth {
+    
+    public enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+    
+    private final LLMClient client;
+    private final double alpha;
+    private final int failureThreshold;
+    private final long openMillis;
+    
+    private double latencyEwma = -1;
+    private double errorRateEwma;
+    private int consecutiveFailures;
+    private CircuitState state = CircuitState.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long requests;
+    private long failures;
+    
+    // 最近成功的非流式请求的延迟样本，用于计算对冲请求的等待时间
+    private static final int LATENCY_SAMPLES = 64;
+    private final long[] recentLatencies = new long[LATENCY_SAMPLES];
+    private int sampleCount;
+    private int nextSample;
+    
+    public ProviderHealth(LLMClient client, double alpha, int failureThreshold, long openMillis) {
+        this.client = client;
+        this.alpha = alpha;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+    
+    public LLMClient getClient() {
+        return client;
+    }
+    
+    /**
+     * 申请向该提供方发送一个请求
+     * 熔断打开期间返回 false；半开状态下只有第一个申请者获得试探机会
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == CircuitState.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                return false;
+            }
+            state = CircuitState.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == CircuitState.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+    
+    /**
+     * 记录一次成功的非流式请求，延迟同时进入对冲等待时间的样本窗口
+     * @param latencyMillis 完整响应的延迟
+     */
+    public synchronized void recordSuccess(long latencyMillis) {
+        recentLatencies[nextSample] = latencyMillis;
+        nextSample = (nextSample + 1) % LATENCY_SAMPLES;
+        sampleCount = Math.min(sampleCount + 1, LATENCY_SAMPLES);
+        succeeded(latencyMillis);
+    }
+    
+    /**
+     * 记录一次成功的流式请求
+     * 首个增量的延迟只参与路由评分，不进入对冲的样本窗口：对冲只用于非流式请求，
+     * 首增量延迟远小于完整响应的延迟，混入后会让对冲过早触发
+     * @param firstDeltaMillis 首个增量的延迟
+     */
+    public synchronized void recordStreamSuccess(long firstDeltaMillis) {
+        succeeded(firstDeltaMillis);
+    }
+    
+    /**
+     * 记录一次失败请求，失败前等待的时间同样计入延迟，超时的提供方因此会被排到后面
+     */
+    public synchronized void recordFailure(long elapsedMillis) {
+        requests++;
+        failures++;
+        updateLatency(elapsedMillis);
+        errorRateEwma = alpha + (1 - alpha) * errorRateEwma;
+        consecutiveFailures++;
+        if (state == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = CircuitState.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+        trialInFlight = false;
+    }
+    
+    /**
+     * 请求被主动取消（例如对冲请求中落败的一方），不计入成功或失败，只释放半开状态的试探名额
+     */
+    public synchronized void recordCancelled() {
+        trialInFlight = false;
+    }
+    
+    /**
+     * 最近成功的非流式请求延迟的分位数
+     * @param percentile 0 到 1 之间，例如 0.9 表示 p90
+     * @param minSamples 样本数不足时返回 -1
+     */
+    public synchronized long latencyPercentile(double percentile, int minSamples) {
+        if (sampleCount < Math.max(1, minSamples)) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(recentLatencies, sampleCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sampleCount) - 1;
+        return sorted[Math.max(0, Math.min(sampleCount - 1, index))];
+    }
+    
+    /**
+     * 路由评分，越小越优先：按错误率放大的期望延迟；还没有样本的提供方评分为 0，会先被试探
+     */
+    public synchronized double score() {
+        if (latencyEwma < 0) {
+            return 0;
+        }
+        return latencyEwma / Math.max(0.1, 1 - errorRateEwma);
+    }
+    
+    public synchronized boolean isOpen() {
+        return state == CircuitState.OPEN && System.currentTimeMillis() - openedAt < openMillis;
+    }
+    
+    public synchronized CircuitState getState() {
+        return state;
+    }
+    
+    public synchronized double getLatencyEwma() {
+        return latencyEwma;
+    }
+    
+    private void succeeded(long latencyMillis) {
+        requests++;
+        updateLatency(latencyMillis);
+        errorRateEwma = (1 - alpha) * errorRateEwma;
+        consecutiveFailures = 0;
+        state = CircuitState.CLOSED;
+        trialInFlight = false;
+    }
+    
+    private void updateLatency(long latencyMillis) {
+        latencyEwma = latencyEwma < 0 ? latencyMillis : alpha * latencyMillis + (1 - alpha) * latencyEwma;
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return client.getClientName() + "{state=" + state
+                + ", latencyEwma=" + (latencyEwma < 0 ? "-" : String.format("%.0fms", latencyEwma))
+                + ", errorRate=" + String.format("%.2f", errorRateEwma)
+                + ", requests=" + requests + ", failures=" + failures + "}";
+    }
+}
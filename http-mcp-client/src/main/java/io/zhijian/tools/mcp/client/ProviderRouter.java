@@ -0,0 +1,74 @@
+package io.zhijian.tools.mcp.client;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * LLM提供方路由
+ * 每次请求按健康状态排序候选提供方：熔断打开的排在最后，其余按评分（期望延迟）从低到高；
+ * 手动指定的首选提供方在健康时排在最前。路由本身不保存“当前提供方”，并发的对话互不影响
+ */
+public class ProviderRouter {
+    
+    private final List<ProviderHealth> providers;
+    private volatile ProviderHealth preferred;
+    
+    public ProviderRouter(List<LLMClient> clients, double alpha, int failureThreshold, long openMillis) {
+        List<ProviderHealth> providers = new ArrayList<>();
+        for (LLMClient client : clients) {
+            providers.add(new ProviderHealth(client, alpha, failureThreshold, openMillis));
+        }
+        this.providers = List.copyOf(providers);
+    }
+    
+    /**
+     * 本次请求的候选顺序
+     */
+    public List<ProviderHealth> candidates() {
+        List<ProviderHealth> candidates = new ArrayList<>(providers);
+        // 评分在排序过程中可能被其他线程更新，先取快照
+        double[] scores = new double[candidates.size()];
+        boolean[] open = new boolean[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            scores[i] = candidates.get(i).score();
+            open[i] = candidates.get(i).isOpen();
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            order.add(i);
+        }
+        ProviderHealth first = preferred;
+        order.sort(Comparator.<Integer>comparingInt(i -> open[i] ? 1 : 0)
+                .thenComparingInt(i -> candidates.get(i) == first ? 0 : 1)
+                .thenComparingDouble(i -> scores[i]));
+        List<ProviderHealth> sorted = new ArrayList<>();
+        for (int i : order) {
+            sorted.add(candidates.get(i));
+        }
+        return sorted;
+    }
+    
+    public List<ProviderHealth> getProviders() {
+        return providers;
+    }
+    
+    /**
+     * 手动指定首选提供方
+     */
+    public void prefer(int index) {
+        preferred = providers.get(index);
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder("ProviderRouter[");
+        for (int i = 0; i < providers.size(); i++) {
+            if (i > 0) {
+                summary.append(", ");
+            }
+            summary.append(providers.get(i));
+        }
+        return summary.append(']').toString();
+    }
+}
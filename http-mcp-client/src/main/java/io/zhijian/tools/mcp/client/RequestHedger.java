@@ -0,0 +1,146 @@
+package io.zhijian.tools.mcp.client;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对冲请求
+ * 主提供方在其最近延迟的指定分位数内没有返回时，把同一个请求再发给下一个提供方，先返回的结果胜出，另一个请求被取消。
+ * 对冲请求受令牌桶预算限制：每个请求存入 budgetRatio 个令牌，每次对冲消耗一个，因此额外请求量不超过约 budgetRatio 倍。
+ * 只用于非流式请求，流式回复已经输出给用户后无法撤回
+ */
+public class RequestHedger {
+    
+    private final double percentile;
+    private final int minSamples;
+    private final long minDelayMillis;
+    private final double budgetRatio;
+    private final double maxTokens;
+    private final ExecutorService executor;
+    
+    private double tokens;
+    
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+    
+    public RequestHedger(double percentile, int minSamples, long minDelayMillis, double budgetRatio, double maxTokens) {
+        this.percentile = percentile;
+        this.minSamples = minSamples;
+        this.minDelayMillis = minDelayMillis;
+        this.budgetRatio = budgetRatio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "llm-hedge-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * 执行一个可能被对冲的请求
+     * @param primary 主提供方
+     * @param remaining 后续候选提供方，对冲时从中取出下一个，取出的提供方不会再被故障切换重试
+     * @param call 对单个提供方执行请求并记录其健康状态
+     * @return 先成功返回的结果；两个请求都失败时抛出后失败的异常
+     */
+    public <T> T call(ProviderHealth primary, Iterator<ProviderHealth> remaining,
+                      ProviderCall<T> call) throws Exception {
+        requests.increment();
+        deposit();
+        long delay = primary.latencyPercentile(percentile, minSamples);
+        if (delay < 0) {
+            return call.apply(primary);
+        }
+        
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        Future<T> primaryFuture = completion.submit(() -> call.apply(primary));
+        Future<T> first = completion.poll(Math.max(delay, minDelayMillis), TimeUnit.MILLISECONDS);
+        if (first != null) {
+            return unwrap(first);
+        }
+        // 先扣预算再取下一个提供方：取出提供方会占用它的熔断名额（半开状态下的试探机会），不能取出后不用
+        if (!tryConsume()) {
+            budgetExhausted.increment();
+            return unwrap(primaryFuture);
+        }
+        if (!remaining.hasNext()) {
+            refund();
+            return unwrap(primaryFuture);
+        }
+        
+        ProviderHealth secondary = remaining.next();
+        hedged.increment();
+        Future<T> secondaryFuture = completion.submit(() -> call.apply(secondary));
+        Exception lastException = null;
+        for (int pending = 2; pending > 0; pending--) {
+            Future<T> done = completion.take();
+            try {
+                T result = unwrap(done);
+                if (done == secondaryFuture) {
+                    hedgeWins.increment();
+                }
+                (done == primaryFuture ? secondaryFuture : primaryFuture).cancel(true);
+                return result;
+            } catch (Exception e) {
+                lastException = e;
+            }
+        }
+        throw lastException;
+    }
+    
+    private static <T> T unwrap(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+    
+    private synchronized void deposit() {
+        tokens = Math.min(maxTokens, tokens + budgetRatio);
+    }
+    
+    private synchronized void refund() {
+        tokens = Math.min(maxTokens, tokens + 1);
+    }
+    
+    private synchronized boolean tryConsume() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+    
+    @Override
+    public String toString() {
+        long hedgedCount = hedged.sum();
+        return String.format("RequestHedger{requests=%d, hedged=%d, hedgeWins=%d (%.0f%%), budgetExhausted=%d}",
+                requests.sum(), hedgedCount, hedgeWins.sum(),
+                hedgedCount == 0 ? 0.0 : 100.0 * hedgeWins.sum() / hedgedCount, budgetExhausted.sum());
+    }
+    
+    /**
+     * 对单个提供方执行的请求
+     */
+    @FunctionalInterface
+    public interface ProviderCall<T> {
+        T apply(ProviderHealth provider) throws Exception;
+    }
+}
@@ -0,0 +1,39 @@
+package io.zhijian.tools.mcp.client;
+
+/**
+ * LLM返回的一个原生函数调用
+ */
+public class ToolCall {
+    
+    private final String id;
+    private final String name;
+    private final String arguments;
+    
+    /**
+     * @param id 调用ID，回填工具结果时作为 tool_call_id
+     * @param name 工具名称
+     * @param arguments JSON格式的参数字符串
+     */
+    public ToolCall(String id, String name, String arguments) {
+        this.id = id;
+        this.name = name;
+        this.arguments = arguments == null || arguments.trim().isEmpty() ? "{}" : arguments;
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getArguments() {
+        return arguments;
+    }
+    
+    @Override
+    public String toString() {
+        return name + arguments;
+    }
+}
@@ -0,0 +1,42 @@
+package io.zhijian.tools.mcp.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Agent配置类
+ */
+public class AgentConfig {
+    
+    private static final Properties config = loadConfig();
+    
+    // 是否以流式方式请求LLM并实时输出回复
+    public static final boolean STREAM = Boolean.parseBoolean(config.getProperty("agent.stream", "true"));
+    
+    // 把MCP工具作为原生函数（tools）发送给LLM；关闭时使用文本中的【工具调用】标记
+    public static final boolean NATIVE_TOOL_CALLING = Boolean.parseBoolean(config.getProperty("agent.native_tool_calling", "true"));
+    
+    // 流式生成过程中每个工具调用块一结束就派发执行
+    public static final boolean EARLY_TOOL_DISPATCH = Boolean.parseBoolean(config.getProperty("agent.early_tool_dispatch", "true"));
+    
+    // 每个MCP服务器同时执行的工具调用上限，以及单个工具调用的超时
+    public static final int MAX_CONCURRENT_TOOL_CALLS = Integer.parseInt(config.getProperty("agent.max_concurrent_tool_calls", "4"));
+    public static final long TOOL_CALL_TIMEOUT_SECONDS = Long.parseLong(config.getProperty("agent.tool_call_timeout_seconds", "30"));
+    
+    // 每次请求的上下文 token 预算（本地估算），以及按引用保存工具结果的长度阈值
+    public static final int CONTEXT_TOKEN_BUDGET = Integer.parseInt(config.getProperty("agent.context_token_budget", "16000"));
+    public static final int TOOL_RESULT_INLINE_CHARS = Integer.parseInt(config.getProperty("agent.tool_result_inline_chars", "1000"));
+    
+    private static Properties loadConfig() {
+        Properties properties = new Properties();
+        try (InputStream input = AgentConfig.class.getClassLoader().getResourceAsStream("application.properties")) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            System.err.println("无法加载Agent配置文件，使用默认配置: " + e.getMessage());
+        }
+        return properties;
+    }
+}
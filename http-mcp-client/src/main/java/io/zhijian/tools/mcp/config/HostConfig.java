@@ -0,0 +1,35 @@
+package io.zhijian.tools.mcp.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * 多会话Agent服务配置类
+ */
+public class HostConfig {
+    
+    private static final Properties config = loadConfig();
+    
+    // HTTP服务端口
+    public static final int PORT = Integer.parseInt(config.getProperty("host.port", "8090"));
+    
+    // 同时保留的会话上限，以及会话空闲多久后被回收
+    public static final int MAX_SESSIONS = Integer.parseInt(config.getProperty("host.max_sessions", "1000"));
+    public static final long SESSION_IDLE_MINUTES = Long.parseLong(config.getProperty("host.session_idle_minutes", "30"));
+    
+    // 运行时不支持虚拟线程（Java 21 以下）时使用的平台线程数
+    public static final int FALLBACK_THREADS = Integer.parseInt(config.getProperty("host.fallback_threads", "64"));
+    
+    private static Properties loadConfig() {
+        Properties properties = new Properties();
+        try (InputStream input = HostConfig.class.getClassLoader().getResourceAsStream("application.properties")) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            System.err.println("无法加载Host配置文件，使用默认配置: " + e.getMessage());
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,45 @@
+package io.zhijian.tools.mcp.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * LLM响应缓存配置类
+ */
+public class LLMCacheConfig {
+    
+    private static final Properties config = loadConfig();
+    
+    // 是否缓存LLM响应
+    public static final boolean ENABLED = Boolean.parseBoolean(config.getProperty("llm.cache.enabled", "true"));
+    
+    // 内存层最大条目数和缓存有效期
+    public static final int MAX_ENTRIES = Integer.parseInt(config.getProperty("llm.cache.max_entries", "256"));
+    public static final long TTL_SECONDS = Long.parseLong(config.getProperty("llm.cache.ttl_seconds", "3600"));
+    
+    // 磁盘层目录，为空时只使用内存层
+    public static final String DISK_DIR = config.getProperty("llm.cache.disk_dir", "").trim();
+    
+    // 结果确定的工具；对话中出现其他工具的结果时不读写缓存（与服务端 @Deterministic 标记的工具保持一致）
+    public static final Set<String> DETERMINISTIC_TOOLS = Arrays.stream(
+                    config.getProperty("llm.cache.deterministic_tools", "calculator,expression").split(","))
+            .map(String::trim)
+            .filter(name -> !name.isEmpty())
+            .collect(Collectors.toUnmodifiableSet());
+    
+    private static Properties loadConfig() {
+        Properties properties = new Properties();
+        try (InputStream input = LLMCacheConfig.class.getClassLoader().getResourceAsStream("application.properties")) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            System.err.println("无法加载缓存配置文件，使用默认配置: " + e.getMessage());
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,42 @@
+package io.zhijian.tools.mcp.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * LLM提供方路由配置类
+ */
+public class LLMRoutingConfig {
+    
+    private static final Properties config = loadConfig();
+    
+    // 延迟和错误率的指数加权平均系数，越大越看重最近的请求
+    public static final double EWMA_ALPHA = Double.parseDouble(config.getProperty("llm.routing.ewma_alpha", "0.3"));
+    
+    // 连续失败多少次后熔断，熔断后多久放行一个试探请求
+    public static final int FAILURE_THRESHOLD = Integer.parseInt(config.getProperty("llm.routing.failure_threshold", "3"));
+    public static final long OPEN_SECONDS = Long.parseLong(config.getProperty("llm.routing.open_seconds", "30"));
+    
+    // 对冲请求：主提供方超过其最近延迟的分位数仍未返回时，把同一请求发给下一个提供方，只用于非流式请求
+    public static final boolean HEDGING_ENABLED = Boolean.parseBoolean(config.getProperty("llm.hedging.enabled", "false"));
+    public static final double HEDGING_PERCENTILE = Double.parseDouble(config.getProperty("llm.hedging.percentile", "0.9"));
+    public static final int HEDGING_MIN_SAMPLES = Integer.parseInt(config.getProperty("llm.hedging.min_samples", "10"));
+    public static final long HEDGING_MIN_DELAY_MS = Long.parseLong(config.getProperty("llm.hedging.min_delay_ms", "500"));
+    
+    // 对冲预算：每个请求积累的令牌数和令牌上限，每次对冲消耗一个令牌
+    public static final double HEDGING_BUDGET_RATIO = Double.parseDouble(config.getProperty("llm.hedging.budget_ratio", "0.1"));
+    public static final double HEDGING_BUDGET_BURST = Double.parseDouble(config.getProperty("llm.hedging.budget_burst", "5"));
+    
+    private static Properties loadConfig() {
+        Properties properties = new Properties();
+        try (InputStream input = LLMRoutingConfig.class.getClassLoader().getResourceAsStream("application.properties")) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            System.err.println("无法加载路由配置文件，使用默认配置: " + e.getMessage());
+        }
+        return properties;
+    }
+}
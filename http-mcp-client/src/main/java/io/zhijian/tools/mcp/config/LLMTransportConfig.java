@@ -0,0 +1,35 @@
+package io.zhijian.tools.mcp.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * LLM HTTP传输层配置类
+ */
+public class LLMTransportConfig {
+    
+    private static final Properties config = loadConfig();
+    
+    // HTTP版本：HTTP_2 时同一主机的并发请求复用一个连接，服务端不支持时自动降级为 HTTP/1.1
+    public static final String HTTP_VERSION = config.getProperty("llm.transport.http_version", "HTTP_2");
+    public static final long CONNECT_TIMEOUT_SECONDS = Long.parseLong(config.getProperty("llm.transport.connect_timeout_seconds", "60"));
+    
+    // 处理响应的线程数，0 表示使用 HttpClient 默认的线程池
+    public static final int EXECUTOR_THREADS = Integer.parseInt(config.getProperty("llm.transport.executor_threads", "4"));
+    
+    // 控制台启动时预先解析域名并建立到各提供方的连接
+    public static final boolean PREWARM = Boolean.parseBoolean(config.getProperty("llm.transport.prewarm", "true"));
+    
+    private static Properties loadConfig() {
+        Properties properties = new Properties();
+        try (InputStream input = LLMTransportConfig.class.getClassLoader().getResourceAsStream("application.properties")) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            System.err.println("无法加载传输层配置文件，使用默认配置: " + e.getMessage());
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,40 @@
+package io.zhijian.tools.mcp.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * MCP客户端连接池配置类
+ */
+public class McpClientConfig {
+    
+    private static final Properties config = loadConfig();
+    
+    // MCP服务器的SSE端点
+    public static final String SERVER_URL = config.getProperty("mcp.server.url", "http://localhost:8080/sse");
+    
+    // 到服务器的SSE连接数，请求按进行中的请求数分配到各连接
+    public static final int POOL_SIZE = Integer.parseInt(config.getProperty("mcp.pool.size", "4"));
+    
+    // 单个MCP请求的超时
+    public static final long REQUEST_TIMEOUT_SECONDS = Long.parseLong(config.getProperty("mcp.request_timeout_seconds", "30"));
+    
+    // 同一连接连续超时多少次后视为断开并重连
+    public static final int TIMEOUT_THRESHOLD = Integer.parseInt(config.getProperty("mcp.pool.timeout_threshold", "3"));
+    
+    // 重连失败后的最长退避时间
+    public static final long RECONNECT_MAX_BACKOFF_SECONDS = Long.parseLong(config.getProperty("mcp.pool.reconnect_max_backoff_seconds", "30"));
+    
+    private static Properties loadConfig() {
+        Properties properties = new Properties();
+        try (InputStream input = McpClientConfig.class.getClassLoader().getResourceAsStream("application.properties")) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            System.err.println("无法加载MCP客户端配置文件，使用默认配置: " + e.getMessage());
+        }
+        return properties;
+    }
+}
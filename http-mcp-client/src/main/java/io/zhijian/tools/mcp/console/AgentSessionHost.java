@@ -0,0 +1,215 @@
+package io.zhijian.tools.mcp.console;
+
+import io.zhijian.tools.mcp.client.LLMClientManager;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 多会话 Agent 宿主
+ * 每个会话拥有独立的 McpHostAgent（对话上下文、工具执行器），所有会话共用一个MCP连接池（含工具列表和工具调用的并发上限）和一个 LLMClientManager
+ * （提供方路由、响应缓存和HTTP连接）。同一会话的请求串行处理，不同会话之间互不阻塞；
+ * 请求在虚拟线程上执行，运行时不支持虚拟线程时退化为固定大小的线程池
+ */
+public class AgentSessionHost implements AutoCloseable {
+    
+    private final McpClientPool mcpClients;
+    private final LLMClientManager llmClientManager;
+    private final int maxSessions;
+    private final long idleMillis;
+    
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final ScheduledExecutorService sweeper;
+    private final boolean virtualThreads;
+    
+    private final LongAdder sessionsCreated = new LongAdder();
+    private final LongAdder sessionsEvicted = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    
+    public AgentSessionHost(McpClientPool mcpClients, LLMClientManager llmClientManager,
+                            int maxSessions, long idleMillis, int fallbackThreads) {
+        this.mcpClients = mcpClients;
+        this.llmClientManager = llmClientManager;
+        this.maxSessions = maxSessions;
+        this.idleMillis = idleMillis;
+        
+        ExecutorService virtualExecutor = newVirtualThreadExecutor();
+        this.virtualThreads = virtualExecutor != null;
+        this.executor = virtualThreads ? virtualExecutor : Executors.newFixedThreadPool(fallbackThreads,
+                daemonThreads("agent-session-"));
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(daemonThreads("agent-session-sweeper-"));
+        long sweepMillis = Math.max(1000, idleMillis / 4);
+        sweeper.scheduleWithFixedDelay(this::evictIdleSessions, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Java 21 起使用每个任务一个虚拟线程的执行器；源码以 Java 11 编译，通过反射获取
+     * @return 不支持虚拟线程时返回 null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+    
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * 处理请求的执行器，HTTP服务直接使用它分发请求
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+    
+    /**
+     * 创建一个新会话
+     * @throws SessionLimitException 会话数已达上限
+     */
+    public synchronized String createSession() {
+        if (sessions.size() >= maxSessions) {
+            throw new SessionLimitException("会话数已达上限: " + maxSessions);
+        }
+        String sessionId = UUID.randomUUID().toString();
+        QuietConsoleUI sessionUi = new QuietConsoleUI("会话 " + sessionId.substring(0, 8));
+        McpHostAgent agent = new McpHostAgent(mcpClients, mcpClients.getTools(), sessionUi, llmClientManager);
+        sessions.put(sessionId, new Session(agent));
+        sessionsCreated.increment();
+        return sessionId;
+    }
+    
+    /**
+     * 在指定会话中处理一条用户输入，同一会话的并发请求排队执行
+     * @return Agent 的最终回答
+     * @throws SessionNotFoundException 会话不存在或已过期
+     */
+    public String chat(String sessionId, String userInput) throws Exception {
+        // 在映射的原子操作里登记使用中，回收线程不会在取出会话之后、加锁之前把它移除
+        Session session = sessions.computeIfPresent(sessionId, (id, current) -> {
+            current.inUse++;
+            return current;
+        });
+        if (session == null) {
+            throw new SessionNotFoundException("会话不存在或已过期: " + sessionId);
+        }
+        requests.increment();
+        try {
+            session.lock.lock();
+            try {
+                return session.agent.handleUserInput(userInput);
+            } finally {
+                session.lock.unlock();
+            }
+        } catch (Exception e) {
+            failures.increment();
+            throw e;
+        } finally {
+            sessions.computeIfPresent(sessionId, (id, current) -> {
+                if (current == session) {
+                    current.touch();
+                    current.inUse--;
+                }
+                return current;
+            });
+        }
+    }
+    
+    public boolean closeSession(String sessionId) {
+        return sessions.remove(sessionId) != null;
+    }
+    
+    /**
+     * 回收空闲超时的会话，正在处理或等待处理请求的会话不回收
+     * 判断和移除在同一个 computeIfPresent 中完成，与 chat() 登记使用互斥
+     */
+    private void evictIdleSessions() {
+        long now = System.currentTimeMillis();
+        for (String sessionId : sessions.keySet()) {
+            sessions.computeIfPresent(sessionId, (id, session) -> {
+                if (session.inUse > 0 || now - session.lastAccess <= idleMillis) {
+                    return session;
+                }
+                sessionsEvicted.increment();
+                return null;
+            });
+        }
+    }
+    
+    public LLMClientManager getLLMClientManager() {
+        return llmClientManager;
+    }
+    
+    public McpClientPool getMcpClients() {
+        return mcpClients;
+    }
+    
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+        executor.shutdown();
+        sessions.clear();
+    }
+    
+    @Override
+    public String toString() {
+        return "AgentSessionHost{sessions=" + sessions.size() + "/" + maxSessions
+                + ", created=" + sessionsCreated.sum() + ", evicted=" + sessionsEvicted.sum()
+                + ", requests=" + requests.sum() + ", failures=" + failures.sum()
+                + ", threads=" + (virtualThreads ? "virtual" : "platform") + "}";
+    }
+    
+    /**
+     * 会话不存在或已过期
+     */
+    public static class SessionNotFoundException extends RuntimeException {
+        public SessionNotFoundException(String message) {
+            super(message);
+        }
+    }
+    
+    /**
+     * 会话数已达上限
+     */
+    public static class SessionLimitException extends RuntimeException {
+        public SessionLimitException(String message) {
+            super(message);
+        }
+    }
+    
+    private static class Session {
+        final McpHostAgent agent;
+        final ReentrantLock lock = new ReentrantLock();
+        volatile long lastAccess = System.currentTimeMillis();
+        // 正在处理和排队等待的请求数，只在 sessions 的 computeIfPresent 中修改
+        int inUse;
+        
+        Session(McpHostAgent agent) {
+            this.agent = agent;
+        }
+        
+        void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package io.zhijian.tools.mcp.console;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 异步并发许可
+ * 同一时间最多运行 maxConcurrent 个异步任务，其余任务排队，前面的任务完成后再启动，不占用等待线程
+ * 许可转交给排队任务时不递归调用：排队的任务同步失败时会立即释放许可并启动下一个，
+ * 所有转交都经过同一个循环依次执行，排队再多也不会加深调用栈
+ */
+public class AsyncPermitLimiter {
+    
+    private final int maxConcurrent;
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> handoff = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger handoffPending = new AtomicInteger();
+    private int running;
+    
+    public AsyncPermitLimiter(int maxConcurrent) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+    }
+    
+    /**
+     * 提交一个异步任务，拿到许可后才调用 task 启动
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            if (result.isDone()) {
+                // 排队期间已被取消
+                release();
+                return;
+            }
+            CompletableFuture<T> started;
+            try {
+                started = task.get();
+            } catch (Throwable e) {
+                started = CompletableFuture.failedFuture(e);
+            }
+            CompletableFuture<T> inner = started;
+            result.whenComplete((value, error) -> {
+                // 调用方取消时同时取消正在执行的任务
+                if (result.isCancelled()) {
+                    inner.cancel(true);
+                }
+            });
+            started.whenComplete((value, error) -> {
+                release();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        };
+        
+        boolean acquired;
+        synchronized (this) {
+            acquired = running < maxConcurrent;
+            if (acquired) {
+                running++;
+            } else {
+                waiting.add(start);
+            }
+        }
+        if (acquired) {
+            start.run();
+        }
+        return result;
+    }
+    
+    private void release() {
+        Runnable next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                running--;
+            }
+        }
+        // 许可直接转交给下一个排队的任务
+        if (next != null) {
+            runHandoff(next);
+        }
+    }
+    
+    /**
+     * 已有线程正在执行转交循环时只入队，由它依次执行，避免 release -> run -> release 的递归
+     */
+    private void runHandoff(Runnable task) {
+        handoff.add(task);
+        if (handoffPending.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            handoff.poll().run();
+        } while (handoffPending.decrementAndGet() != 0);
+    }
+    
+    public synchronized int getRunning() {
+        return running;
+    }
+}
@@ -35,6 +35,7 @@ public class ConsoleUI {
         userOutput("  • tools     - 查看可用工具");
         userOutput("  • prompts   - 查看可用提示模板");
         userOutput("  • clear     - 清空对话历史");
+        userOutput("  • stats     - 查看LLM请求统计");
         userOutput("");
     }
     
@@ -136,6 +137,49 @@ public class ConsoleUI {
         System.out.println(GREEN + "🤖 助手: " + RESET + message);
     }
     
+    // ============ 流式输出 ============
+    
+    private boolean streamDraft;
+    private boolean streamOpened;
+    
+    /**
+     * 开始一段流式回复，标题在第一段内容到达时才输出
+     * @param draft 为 true 时表示中间轮次的回复，以暗色显示
+     */
+    public void assistantStreamStart(boolean draft) {
+        streamDraft = draft;
+        streamOpened = false;
+    }
+    
+    /**
+     * 输出流式回复的一段增量内容
+     */
+    public void assistantStreamToken(String token) {
+        if (!streamOpened) {
+            streamOpened = true;
+            System.out.print(streamDraft ? DIM + "🤖 思考: " : GREEN + "🤖 助手: " + RESET);
+        }
+        System.out.print(token);
+        System.out.flush();
+    }
+    
+    /**
+     * 在流式回复中插入一条提示，例如检测到工具调用
+     */
+    public void assistantStreamNotice(String notice) {
+        assistantStreamToken(BLUE + "[" + notice + "]" + (streamDraft ? DIM : RESET));
+    }
+    
+    /**
+     * 结束当前流式回复
+     */
+    public void assistantStreamEnd() {
+        if (streamOpened) {
+            System.out.println(RESET);
+            streamOpened = false;
+        }
+    }
+    
     /**
      * 致命错误输出
      */
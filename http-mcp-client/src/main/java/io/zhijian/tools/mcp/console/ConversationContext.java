@@ -0,0 +1,261 @@
+package io.zhijian.tools.mcp.console;
+
+import io.zhijian.tools.mcp.client.ChatMessages;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 对话上下文管理
+ * 按用户输入划分轮次，在 token 预算内组装每次请求的消息：
+ * 1. 较长的工具结果只在上下文中保存引用，正文放在结果存储里；当前轮次发送完整结果，较早的轮次只发送引用和预览
+ * 2. 估算值超出预算时，从最早的轮次开始整轮移除（保证函数调用和 tool 结果消息成对），移除的轮次压缩成一行摘要
+ * 系统提示和当前轮次始终保留
+ */
+public class ConversationContext {
+    
+    private static final Pattern INLINE_TOOL_RESULT = Pattern.compile("【工具执行结果】([^【]*)【结果结束】");
+    private static final int PREVIEW_CHARS = 120;
+    private static final int SUMMARY_CHARS = 60;
+    private static final int MAX_SUMMARIES = 20;
+    
+    private final int tokenBudget;
+    private final int inlineToolResultChars;
+    private final ConsoleUI ui;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, String> toolResults = new HashMap<>();
+    private final Deque<String> summaries = new ArrayDeque<>();
+    private Map<String, String> systemMessage;
+    private int systemTokens;
+    private int currentTurn;
+    private int nextReference;
+    
+    /**
+     * @param tokenBudget 每次请求的上下文 token 预算
+     * @param inlineToolResultChars 超过这个长度的工具结果按引用保存
+     */
+    public ConversationContext(int tokenBudget, int inlineToolResultChars, ConsoleUI ui) {
+        this.tokenBudget = tokenBudget;
+        this.inlineToolResultChars = inlineToolResultChars;
+        this.ui = ui;
+    }
+    
+    /**
+     * 设置系统提示，内容不变时保留原来的消息对象，请求编码可以复用已编码的前缀
+     */
+    public void setSystemPrompt(String systemPrompt) {
+        if (systemMessage != null && systemPrompt.equals(systemMessage.get("content"))) {
+            return;
+        }
+        systemMessage = Map.of("role", "system", "content", systemPrompt);
+        systemTokens = TokenEstimator.estimate(systemMessage);
+    }
+    
+    /**
+     * 添加用户输入，开始新的轮次
+     */
+    public void addUserMessage(String content) {
+        currentTurn++;
+        add(Map.of("role", "user", "content", content));
+    }
+    
+    /**
+     * 添加一条消息到当前轮次
+     * 文本标记模式的助手消息中内联的较长【工具执行结果】，在较早的轮次里替换为预览
+     */
+    public void add(Map<String, String> message) {
+        Map<String, String> compact = message;
+        String content = message.get("content");
+        if ("assistant".equals(message.get("role")) && content != null && content.contains("【工具执行结果】")) {
+            compact = new HashMap<>(message);
+            compact.put("content", compactInlineResults(content));
+        }
+        entries.add(new Entry(message, compact, null, currentTurn, TokenEstimator.estimate(message)));
+    }
+    
+    /**
+     * 添加一个原生函数调用的结果，较长的结果只保存引用
+     */
+    public void addToolResult(String toolCallId, String result) {
+        if (result.length() <= inlineToolResultChars) {
+            add(ChatMessages.toolResult(toolCallId, result));
+            return;
+        }
+        String reference = "r" + (++nextReference);
+        toolResults.put(reference, result);
+        Map<String, String> compact = ChatMessages.toolResult(toolCallId, referenceStub(reference, result));
+        entries.add(new Entry(null, compact, reference, currentTurn,
+                TokenEstimator.estimate(ChatMessages.toolResult(toolCallId, result))));
+    }
+    
+    /**
+     * 组装本次请求的消息列表，超出预算时先压缩较早的轮次
+     */
+    public List<Map<String, String>> messages() {
+        compactToBudget();
+        
+        List<Map<String, String>> messages = new ArrayList<>();
+        if (systemMessage != null) {
+            messages.add(systemMessage);
+        }
+        if (!summaries.isEmpty()) {
+            messages.add(summaryMessage());
+        }
+        for (Entry entry : entries) {
+            messages.add(resolve(entry));
+        }
+        return messages;
+    }
+    
+    /**
+     * 当前上下文的 token 估算值
+     */
+    public int estimateTokens() {
+        int tokens = systemTokens;
+        if (!summaries.isEmpty()) {
+            tokens += TokenEstimator.estimate(summaryMessage());
+        }
+        for (Entry entry : entries) {
+            tokens += entry.turn == currentTurn ? entry.fullTokens : entry.compactTokens;
+        }
+        return tokens;
+    }
+    
+    public String getLastUserInput() {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Map<String, String> message = entries.get(i).compact;
+            if ("user".equals(message.get("role"))) {
+                return message.get("content");
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 清空对话，保留系统提示
+     */
+    public void clear() {
+        entries.clear();
+        toolResults.clear();
+        summaries.clear();
+        currentTurn = 0;
+    }
+    
+    private Map<String, String> resolve(Entry entry) {
+        if (entry.turn != currentTurn) {
+            return entry.compact;
+        }
+        if (entry.reference != null) {
+            return ChatMessages.toolResult(entry.compact.get(ChatMessages.TOOL_CALL_ID), toolResults.get(entry.reference));
+        }
+        return entry.message;
+    }
+    
+    private void compactToBudget() {
+        int before = estimateTokens();
+        if (before <= tokenBudget) {
+            return;
+        }
+        int droppedTurns = 0;
+        while (estimateTokens() > tokenBudget && !entries.isEmpty() && entries.get(0).turn < currentTurn) {
+            dropOldestTurn();
+            droppedTurns++;
+        }
+        if (droppedTurns > 0) {
+            ui.logInfo("上下文超出预算（约 " + before + "/" + tokenBudget + " tokens），已将最早的 "
+                    + droppedTurns + " 轮对话压缩为摘要，当前约 " + estimateTokens() + " tokens");
+        }
+        if (estimateTokens() > tokenBudget) {
+            ui.logWarning("当前轮次的上下文仍超出预算（约 " + estimateTokens() + "/" + tokenBudget + " tokens）");
+        }
+    }
+    
+    private void dropOldestTurn() {
+        int turn = entries.get(0).turn;
+        String question = null;
+        String answer = null;
+        Iterator<Entry> iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.turn != turn) {
+                break;
+            }
+            String role = entry.compact.get("role");
+            String content = entry.compact.get("content");
+            if ("user".equals(role) && question == null) {
+                question = content;
+            } else if ("assistant".equals(role) && content != null && !content.isEmpty()) {
+                answer = content;
+            }
+            if (entry.reference != null) {
+                toolResults.remove(entry.reference);
+            }
+            iterator.remove();
+        }
+        
+        summaries.addLast("用户: " + abbreviate(question, SUMMARY_CHARS) + " → 助手: " + abbreviate(answer, SUMMARY_CHARS));
+        while (summaries.size() > MAX_SUMMARIES) {
+            summaries.removeFirst();
+        }
+    }
+    
+    private Map<String, String> summaryMessage() {
+        return Map.of("role", "system", "content", "较早的对话摘要（原文已省略）：\n" + String.join("\n", summaries));
+    }
+    
+    private String compactInlineResults(String content) {
+        Matcher matcher = INLINE_TOOL_RESULT.matcher(content);
+        StringBuilder compacted = new StringBuilder();
+        while (matcher.find()) {
+            String result = matcher.group(1);
+            String replacement = result.length() <= inlineToolResultChars
+                    ? matcher.group()
+                    : "【工具执行结果】" + abbreviate(result.trim(), PREVIEW_CHARS) + "（共 " + result.length() + " 字符，已省略）【结果结束】";
+            matcher.appendReplacement(compacted, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(compacted);
+        return compacted.toString();
+    }
+    
+    private static String referenceStub(String reference, String result) {
+        return "[结果引用 " + reference + "，共 " + result.length() + " 字符，早先轮次只保留预览] "
+                + abbreviate(result.trim(), PREVIEW_CHARS);
+    }
+    
+    private static String abbreviate(String text, int maxChars) {
+        if (text == null) {
+            return "";
+        }
+        String singleLine = text.replaceAll("\\s+", " ").trim();
+        return singleLine.length() <= maxChars ? singleLine : singleLine.substring(0, maxChars) + "…";
+    }
+    
+    private static class Entry {
+        final Map<String, String> message;
+        final Map<String, String> compact;
+        final String reference;
+        final int turn;
+        final int fullTokens;
+        final int compactTokens;
+        
+        /**
+         * @param message 完整消息，按引用保存的工具结果为 null
+         * @param compact 较早轮次发送的压缩消息
+         */
+        Entry(Map<String, String> message, Map<String, String> compact, String reference, int turn, int fullTokens) {
+            this.message = message;
+            this.compact = compact;
+            this.reference = reference;
+            this.turn = turn;
+            this.fullTokens = fullTokens;
+            this.compactTokens = compact == message ? fullTokens : TokenEstimator.estimate(compact);
+        }
+    }
+}
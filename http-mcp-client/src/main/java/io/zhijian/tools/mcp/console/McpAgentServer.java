@@ -0,0 +1,159 @@
+package io.zhijian.tools.mcp.console;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.zhijian.tools.mcp.client.ConfigValidator;
+import io.zhijian.tools.mcp.client.LLMClientManager;
+import io.zhijian.tools.mcp.config.HostConfig;
+import io.zhijian.tools.mcp.config.LLMTransportConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MCP Host 服务模式
+ * 把 Agent 作为共享服务运行：每个会话的对话历史相互隔离，所有会话共用一个MCP连接池和一个LLM路由。
+ * 接口：
+ * POST /chat            请求体 {"sessionId": "可选", "message": "..."}，不带 sessionId 时创建新会话，返回 {"sessionId", "reply"}
+ * DELETE /sessions/{id} 结束会话
+ * GET /stats            会话和LLM请求统计
+ */
+public class McpAgentServer {
+    
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    private final AgentSessionHost host;
+    private final HttpServer server;
+    
+    public McpAgentServer(AgentSessionHost host, int port) throws IOException {
+        this.host = host;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/chat", this::handleChat);
+        server.createContext("/sessions/", this::handleSession);
+        server.createContext("/stats", this::handleStats);
+        // 每个HTTP请求在宿主的执行器（虚拟线程）上处理，会话内的阻塞调用不占用平台线程
+        server.setExecutor(host.getExecutor());
+    }
+    
+    public void start() {
+        server.start();
+    }
+    
+    public void stop() {
+        server.stop(1);
+        host.close();
+    }
+    
+    private void handleChat(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendError(exchange, 405, "只支持 POST");
+            return;
+        }
+        String sessionId;
+        String message;
+        try (InputStream body = exchange.getRequestBody()) {
+            JsonNode request = MAPPER.readTree(body);
+            if (request == null) {
+                request = MAPPER.createObjectNode();
+            }
+            sessionId = request.hasNonNull("sessionId") ? request.get("sessionId").asText() : null;
+            message = request.path("message").asText("").trim();
+        } catch (IOException e) {
+            sendError(exchange, 400, "请求体不是合法的JSON: " + e.getMessage());
+            return;
+        }
+        if (message.isEmpty()) {
+            sendError(exchange, 400, "message 不能为空");
+            return;
+        }
+        
+        try {
+            if (sessionId == null) {
+                sessionId = host.createSession();
+            }
+            String reply = host.chat(sessionId, message);
+            ObjectNode response = MAPPER.createObjectNode();
+            response.put("sessionId", sessionId);
+            response.put("reply", reply);
+            sendJson(exchange, 200, response);
+        } catch (AgentSessionHost.SessionLimitException e) {
+            sendError(exchange, 503, e.getMessage());
+        } catch (AgentSessionHost.SessionNotFoundException e) {
+            sendError(exchange, 404, e.getMessage());
+        } catch (Exception e) {
+            sendError(exchange, 500, "处理请求时发生错误: " + e.getMessage());
+        }
+    }
+    
+    private void handleSession(HttpExchange exchange) throws IOException {
+        if (!"DELETE".equals(exchange.getRequestMethod())) {
+            sendError(exchange, 405, "只支持 DELETE");
+            return;
+        }
+        String sessionId = exchange.getRequestURI().getPath().substring("/sessions/".length());
+        if (host.closeSession(sessionId)) {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        } else {
+            sendError(exchange, 404, "会话不存在或已过期: " + sessionId);
+        }
+    }
+    
+    private void handleStats(HttpExchange exchange) throws IOException {
+        ObjectNode response = MAPPER.createObjectNode();
+        response.put("host", host.toString());
+        response.put("mcp", host.getMcpClients().toString());
+        response.put("llm", host.getLLMClientManager().describeStatistics());
+        sendJson(exchange, 200, response);
+    }
+    
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        ObjectNode response = MAPPER.createObjectNode();
+        response.put("error", message);
+        sendJson(exchange, status, response);
+    }
+    
+    private static void sendJson(HttpExchange exchange, int status, ObjectNode response) throws IOException {
+        byte[] body = MAPPER.writeValueAsString(response).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+    
+    public static void main(String[] args) {
+        ConsoleUI ui = new ConsoleUI();
+        try {
+            ConfigValidator.validateConfig();
+            McpClientPool mcpClients = McpLlmConsole.connectMcpServer(ui);
+            ui.logInfo("🔧 发现可用工具: " + mcpClients.getTools().size() + " 个");
+            
+            LLMClientManager llmClientManager = new LLMClientManager(new QuietConsoleUI("LLM"));
+            if (LLMTransportConfig.PREWARM) {
+                llmClientManager.prewarm();
+            }
+            AgentSessionHost host = new AgentSessionHost(mcpClients, llmClientManager,
+                    HostConfig.MAX_SESSIONS, TimeUnit.MINUTES.toMillis(HostConfig.SESSION_IDLE_MINUTES),
+                    HostConfig.FALLBACK_THREADS);
+            McpAgentServer server = new McpAgentServer(host, HostConfig.PORT);
+            server.start();
+            ui.logSuccess("✅ Agent 服务已启动: http://localhost:" + HostConfig.PORT + "/chat, " + host);
+            
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                mcpClients.close();
+            }));
+        } catch (Exception e) {
+            ui.fatalError("启动Agent服务失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
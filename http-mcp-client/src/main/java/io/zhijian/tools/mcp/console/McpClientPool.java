@@ -0,0 +1,384 @@
+package io.zhijian.tools.mcp.console;
+
+import io.modelcontextprotocol.client.McpAsyncClient;
+import io.modelcontextprotocol.client.McpClient;
+import io.modelcontextprotocol.client.transport.HttpClientSseClientTransport;
+import io.modelcontextprotocol.spec.McpClientTransport;
+import io.modelcontextprotocol.spec.initialization.ClientCapabilities;
+import io.modelcontextprotocol.spec.initialization.InitializeResult;
+import io.modelcontextprotocol.spec.prompt.GetPromptRequest;
+import io.modelcontextprotocol.spec.prompt.GetPromptResult;
+import io.modelcontextprotocol.spec.prompt.ListPromptsResult;
+import io.modelcontextprotocol.spec.tool.CallToolRequest;
+import io.modelcontextprotocol.spec.tool.CallToolResult;
+import io.modelcontextprotocol.spec.tool.ListToolsResult;
+import io.modelcontextprotocol.spec.tool.Tool;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * MCP客户端连接池
+ * 到同一个MCP服务器保持多条已初始化的SSE连接，单条SSE流不再成为多个会话共用时的瓶颈。
+ * 每个请求发给进行中请求最少的连接；连接的传输层出错（或连续超时）时在后台重连，重连期间请求由其他连接承担。
+ * 只读请求（getPrompt、listPrompts、listTools）因连接断开失败时换一条连接重试一次，callTool 可能有副作用，不重试。
+ * 同时执行的工具调用数由池内的并发许可限制，所有会话共用这一个上限；
+ * 工具列表在所有会话之间共享，只在 refreshTools() 时重新获取
+ */
+public class McpClientPool implements AutoCloseable {
+    
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    
+    private final String serverUrl;
+    private final int size;
+    private final Duration requestTimeout;
+    private final int timeoutThreshold;
+    private final long maxBackoffMillis;
+    private final ConsoleUI ui;
+    private final AsyncPermitLimiter toolCallLimiter;
+    
+    private final List<Connection> connections = new ArrayList<>();
+    private final AtomicInteger nextStart = new AtomicInteger();
+    private final ScheduledExecutorService reconnector;
+    private volatile boolean closed;
+    private volatile List<Tool> tools;
+    
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    
+    /**
+     * @param size 连接数
+     * @param timeoutThreshold 同一连接连续超时多少次后视为断开
+     * @param maxBackoffMillis 重连失败后的最长退避时间
+     * @param maxConcurrentToolCalls 同时执行的工具调用上限
+     */
+    public McpClientPool(String serverUrl, int size, Duration requestTimeout, int timeoutThreshold,
+                         long maxBackoffMillis, int maxConcurrentToolCalls, ConsoleUI ui) {
+        this.serverUrl = serverUrl;
+        this.size = Math.max(1, size);
+        this.requestTimeout = requestTimeout;
+        this.timeoutThreshold = Math.max(1, timeoutThreshold);
+        this.maxBackoffMillis = Math.max(INITIAL_BACKOFF_MILLIS, maxBackoffMillis);
+        this.ui = ui;
+        this.toolCallLimiter = new AsyncPermitLimiter(maxConcurrentToolCalls);
+        this.reconnector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mcp-reconnect");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * 并行建立并初始化所有连接
+     * 部分连接失败时先用成功的连接工作，失败的连接在后台重连；全部失败时抛出异常
+     */
+    public void connect() throws InterruptedException {
+        ui.logInfo("🔌 正在连接MCP服务器 " + serverUrl + "（" + size + " 个连接）...");
+        List<McpAsyncClient> clients = new ArrayList<>();
+        List<CompletableFuture<InitializeResult>> initializations = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            McpAsyncClient client = newClient();
+            clients.add(client);
+            initializations.add(client.initialize().toFuture());
+        }
+        
+        InitializeResult serverInfo = null;
+        Exception lastError = null;
+        for (int i = 0; i < size; i++) {
+            Connection connection = new Connection(i);
+            connections.add(connection);
+            try {
+                InitializeResult result = initializations.get(i).get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                connection.client = clients.get(i);
+                serverInfo = result;
+            } catch (ExecutionException | TimeoutException e) {
+                lastError = e;
+                closeQuietly(clients.get(i));
+                scheduleReconnect(connection, 0);
+            }
+        }
+        
+        if (serverInfo == null) {
+            close();
+            Throwable cause = lastError instanceof ExecutionException ? lastError.getCause() : lastError;
+            throw new IllegalStateException("无法连接MCP服务器 " + serverUrl + ": " + cause, cause);
+        }
+        ui.logSuccess("✅ MCP服务器连接成功: " + serverInfo.getServerInfo().getName() +
+                   " v" + serverInfo.getServerInfo().getVersion() + "，可用连接 " + availableConnections() + "/" + size);
+    }
+    
+    private McpAsyncClient newClient() {
+        McpClientTransport transport = HttpClientSseClientTransport.builder(serverUrl)
+                .build();
+        
+        return McpClient.async(transport)
+                .requestTimeout(requestTimeout)
+                .capabilities(ClientCapabilities.builder()
+                        .roots(false)
+                        .sampling()
+                        .build())
+                .build();
+    }
+    
+    /**
+     * 调用工具，拿到并发许可后才发出请求，排队期间不占用线程
+     * @param timeout 本次调用的超时时间，从提交开始计时，包括排队等待许可的时间；请求发出后的超时同样计入该连接的连续超时次数
+     */
+    public Mono<CallToolResult> callTool(CallToolRequest request, Duration timeout) {
+        return Mono.defer(() -> {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            CompletableFuture<CallToolResult> result = toolCallLimiter.submit(() -> {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return CompletableFuture.failedFuture(new TimeoutException("等待工具调用并发许可超时"));
+                }
+                // 连接上的超时只用排队后剩余的时间，超时仍然计入该连接的连续超时次数
+                return execute(client -> client.callTool(request).timeout(Duration.ofNanos(remaining)), false).toFuture();
+            });
+            // 排队等待也计入超时：一直拿不到许可的调用到期后失败，排队的任务在轮到它时直接跳过
+            return Mono.fromFuture(result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS));
+        });
+    }
+    
+    public Mono<GetPromptResult> getPrompt(GetPromptRequest request) {
+        return execute(client -> client.getPrompt(request), true);
+    }
+    
+    public Mono<ListPromptsResult> listPrompts() {
+        return execute(McpAsyncClient::listPrompts, true);
+    }
+    
+    /**
+     * 共享的工具列表，第一次调用时从服务器获取
+     */
+    public List<Tool> getTools() {
+        List<Tool> cached = tools;
+        if (cached == null) {
+            synchronized (this) {
+                cached = tools;
+                if (cached == null) {
+                    cached = refreshTools();
+                }
+            }
+        }
+        return cached;
+    }
+    
+    /**
+     * 重新获取工具列表，失败时抛出异常并保留原来的列表
+     */
+    public synchronized List<Tool> refreshTools() {
+        ListToolsResult result = execute(McpAsyncClient::listTools, true).block();
+        List<Tool> refreshed = List.copyOf(result.getTools());
+        tools = refreshed;
+        return refreshed;
+    }
+    
+    /**
+     * 在进行中请求最少的连接上执行请求
+     * 调用方自己的超时要放在 request 里（在 doOnError 之前），从外层套上的超时会直接取消请求，失败不会被记录
+     * @param retryable 连接断开导致失败时是否换一条连接重试一次
+     */
+    private <T> Mono<T> execute(Function<McpAsyncClient, Mono<T>> request, boolean retryable) {
+        Mono<T> attempt = Mono.defer(() -> {
+            Connection connection = select();
+            // 选出之后连接可能恰好断开
+            McpAsyncClient client = connection == null ? null : connection.client;
+            if (client == null) {
+                return Mono.error(new IllegalStateException("没有可用的MCP连接，正在重连 " + serverUrl));
+            }
+            requests.increment();
+            connection.outstanding.incrementAndGet();
+            return request.apply(client)
+                    .doOnSuccess(result -> connection.consecutiveTimeouts.set(0))
+                    .doOnError(e -> onFailure(connection, client, e))
+                    .doFinally(signal -> connection.outstanding.decrementAndGet());
+        });
+        if (!retryable) {
+            return attempt;
+        }
+        return attempt.onErrorResume(e -> {
+            if (!isTransportFailure(e) || availableConnections() == 0) {
+                return Mono.error(e);
+            }
+            retries.increment();
+            return execute(request, false);
+        });
+    }
+    
+    /**
+     * 选出进行中请求最少的可用连接，起点轮转，请求数相同时依次分配
+     */
+    private Connection select() {
+        int start = Math.floorMod(nextStart.getAndIncrement(), size);
+        Connection best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        for (int i = 0; i < connections.size(); i++) {
+            Connection connection = connections.get((start + i) % connections.size());
+            if (connection.client == null) {
+                continue;
+            }
+            int outstanding = connection.outstanding.get();
+            if (outstanding < bestOutstanding) {
+                best = connection;
+                bestOutstanding = outstanding;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * 传输层异常立即断开连接；超时只在连续达到阈值时才认为SSE流已经失效；
+     * 其他错误是服务器返回的协议错误，说明连接仍然正常
+     */
+    private void onFailure(Connection connection, McpAsyncClient client, Throwable error) {
+        boolean broken = isTransportFailure(error)
+                || (hasCause(error, TimeoutException.class)
+                        && connection.consecutiveTimeouts.incrementAndGet() >= timeoutThreshold);
+        if (broken && connection.detach(client)) {
+            ui.logWarning("MCP连接 #" + connection.index + " 已断开，正在后台重连: " + error.getMessage());
+            closeQuietly(client);
+            scheduleReconnect(connection, 0);
+        }
+    }
+    
+    private static boolean isTransportFailure(Throwable error) {
+        return hasCause(error, IOException.class);
+    }
+    
+    private static boolean hasCause(Throwable error, Class<? extends Throwable> type) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void scheduleReconnect(Connection connection, int attempt) {
+        if (closed) {
+            return;
+        }
+        long delay = attempt == 0 ? 0 : Math.min(maxBackoffMillis, INITIAL_BACKOFF_MILLIS << Math.min(attempt - 1, 16));
+        reconnector.schedule(() -> reconnect(connection, attempt), delay, TimeUnit.MILLISECONDS);
+    }
+    
+    private void reconnect(Connection connection, int attempt) {
+        if (closed) {
+            return;
+        }
+        McpAsyncClient client = newClient();
+        try {
+            client.initialize().block(requestTimeout);
+        } catch (Exception e) {
+            closeQuietly(client);
+            if (attempt == 0) {
+                ui.logWarning("MCP连接 #" + connection.index + " 重连失败，稍后重试: " + e.getMessage());
+            }
+            scheduleReconnect(connection, attempt + 1);
+            return;
+        }
+        if (closed) {
+            closeQuietly(client);
+            return;
+        }
+        connection.consecutiveTimeouts.set(0);
+        connection.client = client;
+        reconnects.increment();
+        ui.logInfo("🔌 MCP连接 #" + connection.index + " 已重连");
+    }
+    
+    private int availableConnections() {
+        int available = 0;
+        for (Connection connection : connections) {
+            if (connection.client != null) {
+                available++;
+            }
+        }
+        return available;
+    }
+    
+    private static void closeQuietly(McpAsyncClient client) {
+        try {
+            client.closeGracefully().subscribe(ignored -> { }, error -> { });
+        } catch (Exception e) {
+            // 连接已经失效，关闭失败不影响重连
+        }
+    }
+    
+    /**
+     * 关闭所有连接，停止重连
+     */
+    @Override
+    public void close() {
+        closed = true;
+        reconnector.shutdownNow();
+        List<CompletableFuture<Void>> closing = new ArrayList<>();
+        for (Connection connection : connections) {
+            McpAsyncClient client = connection.client;
+            connection.client = null;
+            if (client != null) {
+                closing.add(client.closeGracefully().toFuture());
+            }
+        }
+        for (CompletableFuture<Void> future : closing) {
+            try {
+                future.get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | TimeoutException e) {
+                ui.logWarning("关闭MCP连接时发生错误: " + e.getMessage());
+            }
+        }
+    }
+    
+    @Override
+    public String toString() {
+        List<Integer> outstanding = new ArrayList<>();
+        for (Connection connection : connections) {
+            outstanding.add(connection.client == null ? -1 : connection.outstanding.get());
+        }
+        return "MCP连接池: " + serverUrl + ", 可用连接 " + availableConnections() + "/" + size
+                + ", 请求 " + requests.sum() + ", 进行中的工具调用 " + toolCallLimiter.getRunning() + ", 换连接重试 " + retries.sum() + ", 重连 " + reconnects.sum()
+                + ", 各连接进行中的请求 " + outstanding + "（-1 表示正在重连）";
+    }
+    
+    /**
+     * 池中的一条SSE连接，client 为空时表示正在重连
+     */
+    private static class Connection {
+        final int index;
+        final AtomicInteger outstanding = new AtomicInteger();
+        final AtomicInteger consecutiveTimeouts = new AtomicInteger();
+        volatile McpAsyncClient client;
+        
+        Connection(int index) {
+            this.index = index;
+        }
+        
+        /**
+         * 只有仍是出错时的那个客户端才断开，同一次断开引发的多个失败只触发一次重连
+         */
+        synchronized boolean detach(McpAsyncClient failed) {
+            if (client != failed) {
+                return false;
+            }
+            client = null;
+            return true;
+        }
+    }
+}
@@ -1,16 +1,24 @@
 package io.zhijian.tools.mcp.console;
 
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import io.zhijian.tools.mcp.client.ChatMessages;
+import io.zhijian.tools.mcp.client.ChatResponse;
 import io.zhijian.tools.mcp.client.LLMClientManager;
-import io.modelcontextprotocol.client.McpSyncClient;
+import io.zhijian.tools.mcp.client.LLMStreamListener;
+import io.zhijian.tools.mcp.client.ToolCall;
+import io.zhijian.tools.mcp.config.AgentConfig;
 import io.modelcontextprotocol.spec.tool.Tool;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
 /**
  * MCP Host Agent
  * 负责核心的LLM交互和工具协调逻辑
+ * 默认把MCP工具作为原生函数（tools）发送给LLM，函数调用结果以 tool 消息回填；
+ * LLM没有返回原生函数调用但在文本中写了【工具调用】标记时，按标记解析执行
  */
 public class McpHostAgent implements PromptProcessor.LLMClient {
     
@@ -18,14 +26,31 @@ public class McpHostAgent implements PromptProcessor.LLMClient {
     private final ToolExecutor toolExecutor;
     private final PromptProcessor promptProcessor;
     private final ConsoleUI ui;
-    private final List<Map<String, String>> conversationHistory;
+    private final ConversationContext context;
     
-    public McpHostAgent(McpSyncClient mcpClient, List<Tool> availableTools, ConsoleUI ui) {
-        this.llmClientManager = new LLMClientManager(ui);
+    // 系统提示和 tools 定义只在工具列表变化时重建，同一个对象在多次请求间复用，请求前缀保持一致
+    private ArrayNode toolDefinitions;
+    private String systemPrompt;
+    private String toolsFingerprint;
+    
+    // 本次用户输入中最后一个原生函数调用，供最终结果优化使用
+    private String lastToolName;
+    private String lastToolResult;
+    
+    public McpHostAgent(McpClientPool mcpClients, List<Tool> availableTools, ConsoleUI ui) {
+        this(mcpClients, availableTools, ui, new LLMClientManager(ui));
+    }
+    
+    /**
+     * 多会话场景下各会话的 Agent 共用同一个 LLMClientManager（路由、缓存和连接），对话上下文各自独立
+     */
+    public McpHostAgent(McpClientPool mcpClients, List<Tool> availableTools, ConsoleUI ui,
+                        LLMClientManager llmClientManager) {
+        this.llmClientManager = llmClientManager;
         this.ui = ui;
-        this.conversationHistory = new ArrayList<>();
-        this.toolExecutor = new ToolExecutor(mcpClient, ui);
-        this.promptProcessor = new PromptProcessor(mcpClient, ui);
+        this.context = new ConversationContext(AgentConfig.CONTEXT_TOKEN_BUDGET, AgentConfig.TOOL_RESULT_INLINE_CHARS, ui);
+        this.toolExecutor = new ToolExecutor(mcpClients, ui);
+        this.promptProcessor = new PromptProcessor(mcpClients, ui);
         
         // 初始化系统提示
         initializeSystemPrompt(availableTools);
@@ -33,15 +58,19 @@ public class McpHostAgent implements PromptProcessor.LLMClient {
     
     /**
      * 处理用户输入的核心方法
+     * 同一个 Agent 的对话上下文不是线程安全的，同一会话的输入需要由调用方串行提交
+     * @return 输出给用户的最终回答
      */
-    public void handleUserInput(String userInput) throws Exception {
-        conversationHistory.add(Map.of("role", "user", "content", userInput));
+    public String handleUserInput(String userInput) throws Exception {
+        context.addUserMessage(userInput);
+        lastToolName = null;
+        lastToolResult = null;
         
         // 如果是计算相关的请求，添加工具提醒
         if (userInput.contains("*") || userInput.contains("/") || userInput.contains("+") || userInput.contains("-") || userInput.contains("计算")) {
             ui.logInfo("检测到计算请求，提醒AI使用计算器工具");
             // 在对话历史中添加一个提醒
-            conversationHistory.add(Map.of("role", "system", "content", "注意：用户要求进行计算，请使用calculator工具执行计算，不要只是描述计算步骤。"));
+            context.add(Map.of("role", "system", "content", "注意：用户要求进行计算，请使用expression或calculator工具执行计算，不要只是描述计算步骤。"));
         }
         
         // 多轮工具调用循环
@@ -53,17 +82,30 @@ public class McpHostAgent implements PromptProcessor.LLMClient {
             currentIteration++;
             ui.logInfo("第 " + currentIteration + " 轮处理...");
             
-            String llmResponse = llmClientManager.chat(conversationHistory);
-            String assistantMessage = llmClientManager.extractAssistantMessage(llmResponse);
+            PrefetchedToolCalls prefetched = new PrefetchedToolCalls();
+            ChatResponse response = requestAssistantResponse(context.messages(),
+                    AgentConfig.EARLY_TOOL_DISPATCH ? prefetched : null);
+            String assistantMessage = response.getContent();
             
-            // 添加调试日志
-            ui.logInfo("AI原始回答: " + assistantMessage);
+            if (response.hasToolCalls()) {
+                // 原生函数调用：结果以 tool 消息回填，下一轮由LLM直接决定继续调用还是给出最终答案
+                ui.logInfo("检测到 " + response.getToolCalls().size() + " 个函数调用，开始执行...");
+                context.add(ChatMessages.assistantWithToolCalls(assistantMessage, response.getToolCalls()));
+                List<String> results = toolExecutor.executeToolCalls(response.getToolCalls(), prefetched);
+                for (int i = 0; i < results.size(); i++) {
+                    ToolCall toolCall = response.getToolCalls().get(i);
+                    context.addToolResult(toolCall.getId(), results.get(i));
+                    lastToolName = toolCall.getName();
+                    lastToolResult = results.get(i);
+                }
+                continue;
+            }
             
             if (toolExecutor.containsToolCall(assistantMessage)) {
                 // 还有工具调用，继续处理
                 ui.logInfo("检测到工具调用，开始执行...");
-                String processedMessage = processToolCallsOnly(assistantMessage);
-                conversationHistory.add(Map.of("role", "assistant", "content", processedMessage));
+                String processedMessage = processToolCallsOnly(assistantMessage, prefetched);
+                context.add(Map.of("role", "assistant", "content", processedMessage));
                 
                 // 检查处理后的消息是否还有工具调用
                 if (!toolExecutor.containsToolCall(processedMessage)) {
@@ -71,19 +113,16 @@ public class McpHostAgent implements PromptProcessor.LLMClient {
                     ui.logInfo("当前轮次工具调用完成，让AI分析结果...");
                     
                     // 添加一个提示，让AI分析当前结果并决定下一步
-                    List<Map<String, String>> tempHistory = new ArrayList<>(conversationHistory);
+                    List<Map<String, String>> tempHistory = new ArrayList<>(context.messages());
                     tempHistory.add(Map.of("role", "user", "content", 
                         "请分析上述工具执行结果。如果计算还未完成（比如还有未执行的运算），请继续调用工具完成剩余计算。如果计算已完成，请给出最终答案和计算过程总结。"));
                     
-                    String analysisResponse = llmClientManager.chat(tempHistory);
-                    String analysisMessage = llmClientManager.extractAssistantMessage(analysisResponse);
-                    
-                    ui.logInfo("AI分析结果: " + analysisMessage);
+                    String analysisMessage = requestAssistantResponse(tempHistory, null).getContent();
                     
                     if (toolExecutor.containsToolCall(analysisMessage)) {
                         // AI决定继续调用工具
                         ui.logInfo("AI决定继续调用工具，进入下一轮");
-                        conversationHistory.add(Map.of("role", "assistant", "content", analysisMessage));
+                        context.add(Map.of("role", "assistant", "content", analysisMessage));
                         continue;
                     } else {
                         // AI认为计算已完成
@@ -99,7 +138,7 @@ public class McpHostAgent implements PromptProcessor.LLMClient {
                 // 没有工具调用，保存结果用于最终优化
                 ui.logInfo("没有工具调用，直接使用AI回答");
                 finalResult = assistantMessage;
-                conversationHistory.add(Map.of("role", "assistant", "content", assistantMessage));
+                context.add(Map.of("role", "assistant", "content", assistantMessage));
                 break;
             }
         }
@@ -112,16 +151,96 @@ public class McpHostAgent implements PromptProcessor.LLMClient {
         // 使用MCP prompt对最终结果进行优化
         if (finalResult != null) {
             ui.logInfo("开始最终结果优化...");
+            if (AgentConfig.STREAM) {
+                return streamFinalResultWithPrompt(finalResult);
+            }
             String optimizedResult = processFinalResultWithPrompt(finalResult);
             ui.assistantOutput(optimizedResult);
+            return optimizedResult;
+        }
+        return finalResult;
+    }
+    
+    /**
+     * 请求一轮LLM回复
+     * 流式模式下回复实时显示，工具调用块在生成过程中即被识别，只显示调用提示；
+     * prefetched 不为空时，每个工具调用块或原生函数调用一完整就提前派发执行，与后续生成重叠
+     */
+    private ChatResponse requestAssistantResponse(List<Map<String, String>> history,
+                                                  PrefetchedToolCalls prefetched) throws Exception {
+        if (!AgentConfig.STREAM) {
+            ChatResponse response = llmClientManager.chat(history, toolDefinitions);
+            // 添加调试日志
+            ui.logInfo("AI原始回答: " + response.getContent());
+            if (response.hasToolCalls()) {
+                ui.logInfo("AI函数调用: " + response.getToolCalls());
+            }
+            return response;
+        }
+        
+        StreamingToolCallParser parser = new StreamingToolCallParser(ui::assistantStreamToken,
+                index -> ui.assistantStreamNotice("工具调用 #" + index),
+                block -> {
+                    if (prefetched != null) {
+                        toolExecutor.dispatchEarly(block, prefetched);
+                    }
+                });
+        LLMStreamListener listener = new LLMStreamListener() {
+            private int functionCallCount;
+            
+            @Override
+            public void onToken(String token) {
+                parser.onToken(token);
+            }
+            
+            @Override
+            public void onToolCall(ToolCall toolCall) {
+                functionCallCount++;
+                ui.assistantStreamNotice("函数调用 #" + functionCallCount + ": " + toolCall.getName());
+                if (prefetched != null) {
+                    toolExecutor.dispatchEarly(toolCall, prefetched);
+                }
+            }
+        };
+        ui.assistantStreamStart(true);
+        try {
+            ChatResponse response = llmClientManager.chatStream(history, toolDefinitions, listener);
+            parser.finish();
+            return response;
+        } catch (Exception e) {
+            if (prefetched != null) {
+                prefetched.cancelRemaining();
+            }
+            throw e;
+        } finally {
+            ui.assistantStreamEnd();
+        }
+    }
+    
+    /**
+     * 流式输出经MCP prompt优化的最终结果，失败时输出原始结果
+     * @return 实际输出的结果
+     */
+    private String streamFinalResultWithPrompt(String finalResult) {
+        ui.assistantStreamStart(false);
+        try {
+            String optimizedResult = promptProcessor.analyzeToolResult(finalToolName(finalResult),
+                    finalToolResult(finalResult), getLastUserInput(), this, ui::assistantStreamToken);
+            ui.assistantStreamEnd();
+            return optimizedResult;
+        } catch (Exception e) {
+            ui.assistantStreamEnd();
+            ui.logWarning("MCP Prompt调用失败，使用原始结果: " + e.getMessage());
+            ui.assistantOutput(finalResult);
+            return finalResult;
         }
     }
     
     /**
      * 只处理工具调用，不使用MCP prompt
      */
-    private String processToolCallsOnly(String message) throws Exception {
-        return toolExecutor.processToolCalls(message);
+    private String processToolCallsOnly(String message, PrefetchedToolCalls prefetched) throws Exception {
+        return toolExecutor.processToolCalls(message, prefetched);
     }
     
     /**
@@ -129,32 +248,57 @@ public class McpHostAgent implements PromptProcessor.LLMClient {
      */
     private String processFinalResultWithPrompt(String finalResult) throws Exception {
         try {
-            return promptProcessor.processWithMCPPrompt(finalResult, toolExecutor, 
-                getLastUserInput(), this);
+            return promptProcessor.analyzeToolResult(finalToolName(finalResult), finalToolResult(finalResult),
+                getLastUserInput(), this, null);
         } catch (Exception e) {
             ui.logWarning("MCP Prompt调用失败，使用原始结果: " + e.getMessage());
             return finalResult;
         }
     }
     
+    /**
+     * 最终结果对应的工具：优先使用本轮的原生函数调用，否则从回复文本的标记中提取
+     */
+    private String finalToolName(String finalResult) {
+        return lastToolName != null ? lastToolName : toolExecutor.extractToolNameFromMessage(finalResult);
+    }
+    
+    private String finalToolResult(String finalResult) {
+        return lastToolResult != null ? lastToolResult : toolExecutor.extractToolResultFromMessage(finalResult);
+    }
+    
     private String getLastUserInput() {
-        for (int i = conversationHistory.size() - 1; i >= 0; i--) {
-            Map<String, String> msg = conversationHistory.get(i);
-            if ("user".equals(msg.get("role"))) {
-                return msg.get("content");
-            }
-        }
-        return "用户请求";
+        String lastUserInput = context.getLastUserInput();
+        return lastUserInput != null ? lastUserInput : "用户请求";
     }
     
     public void clearHistory(List<Tool> availableTools) {
-        conversationHistory.clear();
+        context.clear();
         initializeSystemPrompt(availableTools);
         ui.logSuccess("对话历史已清空");
         System.out.println();
     }
     
+    /**
+     * 初始化系统提示和 tools 定义
+     * 工具按名称排序后计算指纹，指纹不变时直接复用上次的系统提示和 tools 定义
+     */
     private void initializeSystemPrompt(List<Tool> availableTools) {
+        List<Tool> sortedTools = new ArrayList<>(availableTools);
+        sortedTools.sort(Comparator.comparing(Tool::getName));
+        ArrayNode functionTools = ChatMessages.functionTools(sortedTools);
+        String fingerprint = functionTools.toString();
+        if (fingerprint.equals(toolsFingerprint)) {
+            ui.logInfo("工具列表未变化，复用已有的系统提示");
+        } else {
+            toolsFingerprint = fingerprint;
+            toolDefinitions = AgentConfig.NATIVE_TOOL_CALLING ? functionTools : null;
+            systemPrompt = buildSystemPrompt(sortedTools);
+        }
+        context.setSystemPrompt(systemPrompt);
+    }
+    
+    private String buildSystemPrompt(List<Tool> availableTools) {
         StringBuilder systemPrompt = new StringBuilder();
         systemPrompt.append("# 智能助手系统提示\n\n");
         systemPrompt.append("## 角色定义\n");
@@ -164,6 +308,53 @@ public class McpHostAgent implements PromptProcessor.LLMClient {
         systemPrompt.append("**当用户要求进行计算时，你必须使用计算器工具，而不是自己计算！**\n");
         systemPrompt.append("**不要只是描述计算步骤，而是要实际调用工具执行计算！**\n\n");
         
+        // 添加调试日志
+        ui.logInfo("初始化系统提示，可用工具数量: " + availableTools.size());
+        for (Tool tool : availableTools) {
+            ui.logInfo("工具: " + tool.getName() + " - " + tool.getDescription());
+        }
+        
+        if (AgentConfig.NATIVE_TOOL_CALLING) {
+            appendFunctionCallingGuide(systemPrompt, availableTools);
+        } else {
+            appendToolCallMarkerGuide(systemPrompt, availableTools);
+        }
+        
+        systemPrompt.append("## 对话原则\n");
+        systemPrompt.append("1. 始终以用户需求为中心\n");
+        systemPrompt.append("2. 使用清晰、准确的语言\n");
+        systemPrompt.append("3. 主动提供帮助和建议\n");
+        systemPrompt.append("4. 保持对话的连贯性和上下文理解\n");
+        systemPrompt.append("5. 在适当时机使用工具来增强回答的准确性和实用性\n");
+        
+        return systemPrompt.toString();
+    }
+    
+    /**
+     * 原生函数调用模式的工具说明，工具的参数定义已经通过 tools 发送
+     */
+    private void appendFunctionCallingGuide(StringBuilder systemPrompt, List<Tool> availableTools) {
+        systemPrompt.append("## 工具使用指南\n");
+        systemPrompt.append("可用工具及其参数通过函数调用接口提供。需要使用工具时直接发起函数调用，不要在回复文本中书写调用格式。\n\n");
+        
+        systemPrompt.append("## 计算任务处理规则\n");
+        systemPrompt.append("1. **必须使用工具计算**：不要自己计算\n");
+        if (hasTool(availableTools, "expression")) {
+            systemPrompt.append("2. **表达式工具优先**：包含多个运算的完整表达式，优先调用一次expression工具直接求值\n");
+        } else {
+            systemPrompt.append("2. **分解复杂表达式**：按先乘除、后加减的顺序分解为calculator的简单运算\n");
+        }
+        systemPrompt.append("3. **并发独立运算**：互不依赖的运算在同一次回复中一起发起多个函数调用，它们会并发执行\n");
+        systemPrompt.append("4. **引用前面的结果**：依赖前面结果的运算不必等待下一轮，在同一次回复中一起发起，"
+                + "把参数值写成字符串 \"$序号\"（序号是被引用的函数调用在本次回复中的位置，从 1 开始，例如 \"$1\"）。"
+                + "系统会在被引用的调用返回后代入实际结果再执行，不要自己假设中间结果\n");
+        systemPrompt.append("5. **给出最终答案**：所有运算完成后，直接给出最终答案和计算过程总结\n\n");
+    }
+    
+    /**
+     * 文本标记模式的工具说明：工具列表、【工具调用】格式和多步计算示例
+     */
+    private void appendToolCallMarkerGuide(StringBuilder systemPrompt, List<Tool> availableTools) {
         systemPrompt.append("## 工具使用指南\n");
         systemPrompt.append("你可以使用以下工具来帮助用户：\n\n");
         
@@ -173,12 +364,6 @@ public class McpHostAgent implements PromptProcessor.LLMClient {
             systemPrompt.append("- 参数: ").append(tool.getInputSchema()).append("\n\n");
         }
         
-        // 添加调试日志
-        ui.logInfo("初始化系统提示，可用工具数量: " + availableTools.size());
-        for (Tool tool : availableTools) {
-            ui.logInfo("工具: " + tool.getName() + " - " + tool.getDescription());
-        }
-        
         systemPrompt.append("## 工具调用格式\n");
         systemPrompt.append("当你需要使用工具时，请使用以下格式：\n");
         systemPrompt.append("【工具调用】\n");
@@ -186,38 +371,66 @@ public class McpHostAgent implements PromptProcessor.LLMClient {
         systemPrompt.append("参数: <JSON格式的参数>\n");
         systemPrompt.append("【工具调用结束】\n\n");
         
+        systemPrompt.append("## 步骤编号与结果引用\n");
+        systemPrompt.append("后面的工具调用需要前面调用的结果时，不必等待下一轮：\n");
+        systemPrompt.append("1. 在被引用的工具调用中、工具名称之前加一行 \"编号: s1\"（编号由字母、数字、下划线组成，同一回答内不能重复）\n");
+        systemPrompt.append("2. 在后面调用的参数中把对应的值写成字符串 \"$s1\"\n");
+        systemPrompt.append("3. 系统会按依赖关系执行：互不依赖的调用并发执行，依赖的调用在前面结果返回后自动代入实际数值再执行\n");
+        systemPrompt.append("4. 结果为 \"Result: 数字\" 时代入数值，其他结果按原文本代入；被引用的步骤失败时，依赖它的步骤也会失败\n\n");
+        
         systemPrompt.append("## 计算任务处理规则\n");
         systemPrompt.append("当用户要求计算数学表达式时：\n");
         systemPrompt.append("1. **必须使用计算器工具**：不要自己计算，必须调用calculator工具\n");
         systemPrompt.append("2. **分解复杂表达式**：将复杂表达式分解为简单运算\n");
         systemPrompt.append("3. **按优先级执行**：先乘除，后加减\n");
-        systemPrompt.append("4. **逐步调用工具**：每个运算都要调用一次calculator工具\n\n");
+        systemPrompt.append("4. **逐步调用工具**：每个运算都要调用一次calculator工具\n");
+        systemPrompt.append("5. **合并独立运算**：多个互不依赖的运算可以通过calculator的batch参数在一次调用中完成，例如 {\"batch\": [{\"operation\": \"multiply\", \"a\": 30, \"b\": 39}, {\"operation\": \"multiply\", \"a\": 3, \"b\": 4}]}\n\n");
+        
+        if (hasTool(availableTools, "expression")) {
+            systemPrompt.append("## 表达式工具优先\n");
+            systemPrompt.append("对于包含多个运算的完整表达式，优先调用一次expression工具直接求值，不要拆分成多次calculator调用：\n");
+            systemPrompt.append("【工具调用】\n");
+            systemPrompt.append("工具名称: expression\n");
+            systemPrompt.append("参数: {\"expression\": \"30 * 39 + 3 * 4 - 1\"}\n");
+            systemPrompt.append("【工具调用结束】\n");
+            systemPrompt.append("只有在expression工具不可用或执行失败时，才按下面的步骤分解计算。\n\n");
+        }
         
         systemPrompt.append("## 示例：用户说\"计算 30 * 39 + 3 * 4 - 1\"\n");
         systemPrompt.append("你应该这样回应：\n");
         systemPrompt.append("我来帮您计算这个表达式。按照运算优先级，我需要先计算乘法，再进行加减法。\n\n");
         systemPrompt.append("第一步，计算 30 * 39：\n");
         systemPrompt.append("【工具调用】\n");
+        systemPrompt.append("编号: s1\n");
         systemPrompt.append("工具名称: calculator\n");
         systemPrompt.append("参数: {\"operation\": \"multiply\", \"a\": 30, \"b\": 39}\n");
         systemPrompt.append("【工具调用结束】\n\n");
         systemPrompt.append("第二步，计算 3 * 4：\n");
         systemPrompt.append("【工具调用】\n");
+        systemPrompt.append("编号: s2\n");
         systemPrompt.append("工具名称: calculator\n");
         systemPrompt.append("参数: {\"operation\": \"multiply\", \"a\": 3, \"b\": 4}\n");
         systemPrompt.append("【工具调用结束】\n\n");
-        systemPrompt.append("注意：第三步和第四步需要在获得前两步的实际结果后才能执行。\n");
-        systemPrompt.append("请等待工具执行结果，然后根据实际返回的数值继续计算。\n\n");
+        systemPrompt.append("第三步，将前两步结果相加：\n");
+        systemPrompt.append("【工具调用】\n");
+        systemPrompt.append("编号: s3\n");
+        systemPrompt.append("工具名称: calculator\n");
+        systemPrompt.append("参数: {\"operation\": \"add\", \"a\": \"$s1\", \"b\": \"$s2\"}\n");
+        systemPrompt.append("【工具调用结束】\n\n");
+        systemPrompt.append("第四步，减去 1：\n");
+        systemPrompt.append("【工具调用】\n");
+        systemPrompt.append("工具名称: calculator\n");
+        systemPrompt.append("参数: {\"operation\": \"subtract\", \"a\": \"$s3\", \"b\": 1}\n");
+        systemPrompt.append("【工具调用结束】\n\n");
+        systemPrompt.append("第一、二步会并发执行，第三、四步在依赖的结果返回后自动执行，全部在同一轮内完成。\n\n");
         
         systemPrompt.append("## 多轮工具调用策略\n");
-        systemPrompt.append("1. 首先调用所有可以立即执行的工具（使用已知数值）\n");
-        systemPrompt.append("2. 等待工具执行结果\n");
-        systemPrompt.append("3. 根据工具返回的实际结果，继续调用后续工具\n");
-        systemPrompt.append("4. 重复步骤2-3，直到完成所有计算\n\n");
+        systemPrompt.append("1. 能用 \"$编号\" 表达的依赖，在一次回答中发出全部工具调用\n");
+        systemPrompt.append("2. 只有下一步做什么取决于结果内容（而不仅仅是结果数值）时，才等待工具执行结果后再继续\n");
+        systemPrompt.append("3. 根据工具返回的实际结果，决定是否需要继续调用工具\n\n");
         systemPrompt.append("## 重要提醒\n");
-        systemPrompt.append("- 不要使用占位符如 <第一步结果>，必须等待实际数值\n");
-        systemPrompt.append("- 工具执行后，使用返回的具体数值进行后续计算\n");
-        systemPrompt.append("- 如果计算复杂，可以分多轮进行，每轮等待工具结果\n");
+        systemPrompt.append("- 不要使用 <第一步结果> 这样的占位符，需要前面步骤的结果时用 \"$编号\" 引用\n");
+        systemPrompt.append("- 不要自己推算中间结果再写进参数\n");
         systemPrompt.append("- 最终给出完整的计算过程和结果\n\n");
         
         systemPrompt.append("### 工作流程\n");
@@ -231,13 +444,13 @@ public class McpHostAgent implements PromptProcessor.LLMClient {
         systemPrompt.append("对于表达式 `29 * 48 + 39 / 3`：\n");
         systemPrompt.append("1. 第一步：计算 `29 * 48`\n");
         systemPrompt.append("2. 第二步：计算 `39 / 3`\n");
-        systemPrompt.append("3. 第三步：将前两步结果相加\n");
-        systemPrompt.append("每步完成后，等待结果再继续下一步。\n\n");
+        systemPrompt.append("3. 第三步：用 \"$编号\" 引用前两步结果相加\n");
+        systemPrompt.append("三个调用在同一次回答中发出，由系统按依赖顺序执行。\n\n");
         
         systemPrompt.append("### 多步计算策略\n");
         systemPrompt.append("**方法一：一次性发出所有工具调用**\n");
-        systemPrompt.append("在第一次回答中发出所有必要的工具调用，系统会依次执行。\n\n");
-        systemPrompt.append("**方法二：分步执行**\n");
+        systemPrompt.append("在第一次回答中发出所有必要的工具调用，后面的步骤用 \"$编号\" 引用前面的结果，系统会按依赖关系执行。\n\n");
+        systemPrompt.append("**方法二：分步执行（仅当下一步做什么取决于结果内容时）**\n");
         systemPrompt.append("1. 发出第一组工具调用\n");
         systemPrompt.append("2. 等待执行结果\n");
         systemPrompt.append("3. 分析结果，决定是否需要继续调用工具\n");
@@ -253,7 +466,7 @@ public class McpHostAgent implements PromptProcessor.LLMClient {
         systemPrompt.append("### 数学表达式处理规则\n");
         systemPrompt.append("1. **运算优先级**：先乘除，后加减\n");
         systemPrompt.append("2. **分步计算**：将复杂表达式分解为简单运算\n");
-        systemPrompt.append("3. **结果引用**：使用前一步的结果作为下一步的输入\n");
+        systemPrompt.append("3. **结果引用**：用 \"$编号\" 把前一步的结果作为下一步的输入\n");
         systemPrompt.append("4. **验证结果**：检查最终计算结果的合理性\n\n");
         
         systemPrompt.append("### 工具调用格式示例\n");
@@ -261,29 +474,32 @@ public class McpHostAgent implements PromptProcessor.LLMClient {
         systemPrompt.append("**重要：你需要一次性发出所有必要的工具调用，不要分多次发送！**\n\n");
         systemPrompt.append("第一步：\n");
         systemPrompt.append("【工具调用】\n");
+        systemPrompt.append("编号: s1\n");
         systemPrompt.append("工具名称: calculator\n");
         systemPrompt.append("参数: {\"operation\": \"multiply\", \"a\": 20, \"b\": 4}\n");
         systemPrompt.append("【工具调用结束】\n\n");
         systemPrompt.append("第二步：\n");
         systemPrompt.append("【工具调用】\n");
+        systemPrompt.append("编号: s2\n");
         systemPrompt.append("工具名称: calculator\n");
         systemPrompt.append("参数: {\"operation\": \"divide\", \"a\": 40, \"b\": 2}\n");
         systemPrompt.append("【工具调用结束】\n\n");
         systemPrompt.append("第三步：\n");
         systemPrompt.append("【工具调用】\n");
+        systemPrompt.append("编号: s3\n");
         systemPrompt.append("工具名称: calculator\n");
-        systemPrompt.append("参数: {\"operation\": \"add\", \"a\": 80, \"b\": 20}\n");
+        systemPrompt.append("参数: {\"operation\": \"add\", \"a\": \"$s1\", \"b\": \"$s2\"}\n");
         systemPrompt.append("【工具调用结束】\n\n");
         systemPrompt.append("第四步：\n");
         systemPrompt.append("【工具调用】\n");
         systemPrompt.append("工具名称: calculator\n");
-        systemPrompt.append("参数: {\"operation\": \"add\", \"a\": 100, \"b\": 5}\n");
+        systemPrompt.append("参数: {\"operation\": \"add\", \"a\": \"$s3\", \"b\": 5}\n");
         systemPrompt.append("【工具调用结束】\n\n");
         
         systemPrompt.append("### 重要提醒\n");
         systemPrompt.append("1. **一次性发出所有工具调用**：不要分多次发送，一次回答中包含所有必要的工具调用\n");
         systemPrompt.append("2. **按运算优先级排序**：先乘除，后加减\n");
-        systemPrompt.append("3. **使用前一步的结果**：在后续工具调用中使用前面步骤的计算结果\n");
+        systemPrompt.append("3. **引用前一步的结果**：在后续工具调用中用 \"$编号\" 引用前面步骤的计算结果\n");
         systemPrompt.append("4. **确保完整性**：确保所有运算都被包含在工具调用中\n\n");
         
         systemPrompt.append("## 工具结果处理指南\n");
@@ -299,7 +515,7 @@ public class McpHostAgent implements PromptProcessor.LLMClient {
         systemPrompt.append("1. **等待工具结果**：不要假设工具会返回什么，等待实际结果\n");
         systemPrompt.append("2. **分析结果内容**：仔细分析工具返回的具体数值\n");
         systemPrompt.append("3. **决定下一步**：根据当前结果决定是否需要继续计算\n");
-        systemPrompt.append("4. **使用实际结果**：在后续工具调用中使用工具返回的实际数值\n\n");
+        systemPrompt.append("4. **使用实际结果**：在后续工具调用中引用或使用工具返回的实际数值\n\n");
         
         systemPrompt.append("### 成功结果处理模板：\n");
         systemPrompt.append("\"根据计算器的执行结果：{结果内容}，我可以告诉您...\"\n");
@@ -324,32 +540,31 @@ public class McpHostAgent implements PromptProcessor.LLMClient {
         systemPrompt.append("### 工具结果处理示例：\n");
         systemPrompt.append("假设第一步工具返回：Result: 80\n");
         systemPrompt.append("第二步工具返回：Result: 20\n");
-        systemPrompt.append("第三步应该使用实际结果：{\"operation\": \"add\", \"a\": 80, \"b\": 20}\n");
-        systemPrompt.append("而不是假设的结果！\n\n");
-        
-        systemPrompt.append("## 对话原则\n");
-        systemPrompt.append("1. 始终以用户需求为中心\n");
-        systemPrompt.append("2. 使用清晰、准确的语言\n");
-        systemPrompt.append("3. 主动提供帮助和建议\n");
-        systemPrompt.append("4. 保持对话的连贯性和上下文理解\n");
-        systemPrompt.append("5. 在适当时机使用工具来增强回答的准确性和实用性\n");
-        
-        conversationHistory.add(Map.of("role", "system", "content", systemPrompt.toString()));
+        systemPrompt.append("第三步写成 {\"operation\": \"add\", \"a\": \"$s1\", \"b\": \"$s2\"}，系统会代入为 {\"operation\": \"add\", \"a\": 80, \"b\": 20}\n");
+        systemPrompt.append("不要自己假设中间结果！\n\n");
+    }
+    
+    private boolean hasTool(List<Tool> availableTools, String toolName) {
+        for (Tool tool : availableTools) {
+            if (toolName.equals(tool.getName())) {
+                return true;
+            }
+        }
+        return false;
     }
     
     @Override
-    public String chat(List<Map<String, String>> history) throws Exception {
+    public ChatResponse chat(List<Map<String, String>> history) throws Exception {
         return llmClientManager.chat(history);
     }
     
     @Override
-    public String extractAssistantMessage(String response) {
-        try {
-            return llmClientManager.extractAssistantMessage(response);
-        } catch (Exception e) {
-            // 你可以选择记录日志，或者抛出运行时异常
-            throw new RuntimeException("extractAssistantMessage 发生异常", e);
-        }
+    public String chatStream(List<Map<String, String>> history, LLMStreamListener listener) throws Exception {
+        return llmClientManager.chatStream(history, listener);
+    }
+    
+    public LLMClientManager getLLMClientManager() {
+        return llmClientManager;
     }
     
     public PromptProcessor getPromptProcessor() {
@@ -1,19 +1,16 @@
 package io.zhijian.tools.mcp.console;
 
-import io.modelcontextprotocol.client.McpClient;
-import io.modelcontextprotocol.client.McpSyncClient;
-import io.modelcontextprotocol.client.transport.HttpClientSseClientTransport;
-import io.modelcontextprotocol.spec.tool.ListToolsResult;
 import io.modelcontextprotocol.spec.tool.Tool;
-import io.modelcontextprotocol.spec.McpClientTransport;
-import io.modelcontextprotocol.spec.initialization.ClientCapabilities;
-import io.modelcontextprotocol.spec.initialization.InitializeResult;
 import io.zhijian.tools.mcp.client.ConfigValidator;
+import io.zhijian.tools.mcp.config.AgentConfig;
+import io.zhijian.tools.mcp.config.LLMTransportConfig;
+import io.zhijian.tools.mcp.config.McpClientConfig;
 
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 /**
  * MCP Host 控制台程序 - 重构后的简化版本
@@ -21,9 +18,7 @@ import java.util.Scanner;
  */
 public class McpLlmConsole {
     
-    private static final String MCP_SERVER_URL = "http://localhost:8080/sse";
-    
-    private final McpSyncClient mcpClient;
+    private final McpClientPool mcpClients;
     private final List<Tool> availableTools;
     private final ConsoleUI ui;
     private McpHostAgent agent;
@@ -35,31 +30,47 @@ public class McpLlmConsole {
         // 验证LLM配置
         ConfigValidator.validateConfig();
         
-        // 初始化MCP客户端
-        ui.logInfo("🔌 正在连接MCP服务器...");
-        McpClientTransport transport = HttpClientSseClientTransport.builder(MCP_SERVER_URL)
-                .build();
-        
-        this.mcpClient = McpClient.sync(transport)
-                .requestTimeout(Duration.ofSeconds(30))
-                .capabilities(ClientCapabilities.builder()
-                        .roots(false)
-                        .sampling()
-                        .build())
-                .build();
-        
-        // 初始化连接并获取可用工具
-        InitializeResult initResult = mcpClient.initialize();
-        ui.logSuccess("✅ MCP服务器连接成功: " + initResult.getServerInfo().getName() + 
-                   " v" + initResult.getServerInfo().getVersion());
+        // 初始化MCP连接池
+        this.mcpClients = connectMcpServer(ui);
         
         // 获取可用工具列表
-        ListToolsResult toolsResult = mcpClient.listTools();
-        availableTools.addAll(toolsResult.getTools());
+        availableTools.addAll(mcpClients.getTools());
         ui.logInfo("🔧 发现可用工具: " + availableTools.size() + " 个");
         
         // 初始化Agent
-        this.agent = new McpHostAgent(mcpClient, availableTools, ui);
+        this.agent = new McpHostAgent(mcpClients, availableTools, ui);
+        
+        // 用户输入第一个问题时，到LLM提供方的连接已经建立好
+        if (LLMTransportConfig.PREWARM) {
+            agent.getLLMClientManager().prewarm();
+        }
+    }
+    
+    /**
+     * 建立到MCP服务器的连接池，服务器地址和连接数见 McpClientConfig
+     * 使用异步客户端，同一轮中的多个工具调用可以并发执行，并分散到不同的SSE连接上
+     */
+    static McpClientPool connectMcpServer(ConsoleUI ui) throws InterruptedException {
+        McpClientPool mcpClients = new McpClientPool(McpClientConfig.SERVER_URL, McpClientConfig.POOL_SIZE,
+                Duration.ofSeconds(McpClientConfig.REQUEST_TIMEOUT_SECONDS), McpClientConfig.TIMEOUT_THRESHOLD,
+                TimeUnit.SECONDS.toMillis(McpClientConfig.RECONNECT_MAX_BACKOFF_SECONDS),
+                AgentConfig.MAX_CONCURRENT_TOOL_CALLS, ui);
+        mcpClients.connect();
+        return mcpClients;
+    }
+    
+    /**
+     * 重新获取工具列表，失败时保留原来的列表
+     * Agent 只在工具列表实际变化时重建系统提示
+     */
+    private void refreshTools() {
+        try {
+            List<Tool> tools = mcpClients.refreshTools();
+            availableTools.clear();
+            availableTools.addAll(tools);
+        } catch (Exception e) {
+            ui.logWarning("刷新工具列表失败，继续使用原来的工具列表: " + e.getMessage());
+        }
     }
     
     /**
@@ -83,10 +94,17 @@ public class McpLlmConsole {
                 }
                 
                 if (userInput.equalsIgnoreCase("clear")) {
+                    refreshTools();
                     agent.clearHistory(availableTools);
                     continue;
                 }
                 
+                if (userInput.equalsIgnoreCase("stats")) {
+                    ui.logInfo(agent.getLLMClientManager().describeStatistics());
+                    ui.logInfo(mcpClients.toString());
+                    continue;
+                }
+                
                 if (userInput.equalsIgnoreCase("prompts")) {
                     agent.getPromptProcessor().showAvailablePrompts();
                     continue;
@@ -115,7 +133,7 @@ public class McpLlmConsole {
     private void cleanup() {
         try {
             ui.logInfo("正在关闭 MCP 连接...");
-            mcpClient.closeGracefully();
+            mcpClients.close();
             ui.logSuccess("MCP 连接已关闭");
         } catch (Exception e) {
             ui.logError("关闭MCP客户端时发生错误: " + e.getMessage());
@@ -0,0 +1,52 @@
+package io.zhijian.tools.mcp.console;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 提前派发的工具调用
+ * 按工具名和参数记录在流式生成过程中已经开始执行的调用，
+ * 整条回复处理工具调用时按相同的键取回结果；同样的调用出现多次时按出现顺序对应
+ */
+public class PrefetchedToolCalls {
+    
+    private final Map<String, Deque<CompletableFuture<String>>> calls = new HashMap<>();
+    
+    static String key(String toolName, String paramsJson) {
+        return toolName + "\u0000" + paramsJson;
+    }
+    
+    synchronized void add(String key, CompletableFuture<String> result) {
+        calls.computeIfAbsent(key, k -> new ArrayDeque<>()).addLast(result);
+    }
+    
+    /**
+     * 取出一个提前派发的调用，没有时返回 null
+     */
+    synchronized CompletableFuture<String> take(String key) {
+        Deque<CompletableFuture<String>> results = calls.get(key);
+        if (results == null) {
+            return null;
+        }
+        CompletableFuture<String> result = results.pollFirst();
+        if (results.isEmpty()) {
+            calls.remove(key);
+        }
+        return result;
+    }
+    
+    /**
+     * 取消所有没有被取走的调用
+     */
+    synchronized void cancelRemaining() {
+        for (Deque<CompletableFuture<String>> results : calls.values()) {
+            for (CompletableFuture<String> result : results) {
+                result.cancel(true);
+            }
+        }
+        calls.clear();
+    }
+}
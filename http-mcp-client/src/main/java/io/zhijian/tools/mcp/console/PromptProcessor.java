@@ -1,11 +1,12 @@
 package io.zhijian.tools.mcp.console;
 
-import io.modelcontextprotocol.client.McpSyncClient;
 import io.modelcontextprotocol.spec.content.TextContent;
 import io.modelcontextprotocol.spec.prompt.GetPromptRequest;
 import io.modelcontextprotocol.spec.prompt.GetPromptResult;
 import io.modelcontextprotocol.spec.prompt.ListPromptsResult;
 import io.modelcontextprotocol.spec.prompt.PromptMessage;
+import io.zhijian.tools.mcp.client.ChatResponse;
+import io.zhijian.tools.mcp.client.LLMStreamListener;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -18,11 +19,11 @@ import java.util.Map;
  */
 public class PromptProcessor {
     
-    private final McpSyncClient mcpClient;
+    private final McpClientPool mcpClients;
     private final ConsoleUI ui;
     
-    public PromptProcessor(McpSyncClient mcpClient, ConsoleUI ui) {
-        this.mcpClient = mcpClient;
+    public PromptProcessor(McpClientPool mcpClients, ConsoleUI ui) {
+        this.mcpClients = mcpClients;
         this.ui = ui;
     }
     
@@ -31,9 +32,25 @@ public class PromptProcessor {
      */
     public String processWithMCPPrompt(String messageWithToolResults, ToolExecutor toolExecutor, 
                                       String lastUserInput, LLMClient llmClient) throws Exception {
+        return processWithMCPPrompt(messageWithToolResults, toolExecutor, lastUserInput, llmClient, null);
+    }
+    
+    /**
+     * 使用MCP Prompt指导LLM分析工具结果，listener 不为空时以流式方式输出分析结果
+     */
+    public String processWithMCPPrompt(String messageWithToolResults, ToolExecutor toolExecutor, 
+                                      String lastUserInput, LLMClient llmClient,
+                                      LLMStreamListener listener) throws Exception {
         String toolName = toolExecutor.extractToolNameFromMessage(messageWithToolResults);
         String toolResult = toolExecutor.extractToolResultFromMessage(messageWithToolResults);
-        
+        return analyzeToolResult(toolName, toolResult, lastUserInput, llmClient, listener);
+    }
+    
+    /**
+     * 使用MCP Prompt指导LLM分析已知的工具名称和结果（例如原生函数调用的结果），listener 不为空时以流式方式输出
+     */
+    public String analyzeToolResult(String toolName, String toolResult, String lastUserInput,
+                                    LLMClient llmClient, LLMStreamListener listener) throws Exception {
         Map<String, Object> promptArgs = new HashMap<>();
         promptArgs.put("tool_name", toolName);
         promptArgs.put("tool_result", toolResult);
@@ -41,7 +58,7 @@ public class PromptProcessor {
         
         ui.logInfo("正在使用MCP Prompt指导LLM分析结果...");
         GetPromptRequest request = new GetPromptRequest("analyze_tool_result", promptArgs);
-        GetPromptResult promptResult = mcpClient.getPrompt(request);
+        GetPromptResult promptResult = mcpClients.getPrompt(request).block();
         
         if (promptResult.getMessages() != null && !promptResult.getMessages().isEmpty()) {
             PromptMessage promptMessage = promptResult.getMessages().get(0);
@@ -51,8 +68,10 @@ public class PromptProcessor {
                 List<Map<String, String>> analysisHistory = new ArrayList<>();
                 analysisHistory.add(Map.of("role", "user", "content", analysisPrompt));
                 
-                String llmResponse = llmClient.chat(analysisHistory);
-                return llmClient.extractAssistantMessage(llmResponse);
+                if (listener != null) {
+                    return llmClient.chatStream(analysisHistory, listener);
+                }
+                return llmClient.chat(analysisHistory).getContent();
             }
         }
         
@@ -64,7 +83,7 @@ public class PromptProcessor {
      */
     public void showAvailablePrompts() {
         try {
-            ListPromptsResult promptsResult = mcpClient.listPrompts();
+            ListPromptsResult promptsResult = mcpClients.listPrompts().block();
             ui.showAvailablePrompts(promptsResult.getPrompts());
         } catch (Exception e) {
             ui.logError("获取 Prompt 列表失败: " + e.getMessage());
@@ -73,7 +92,12 @@ public class PromptProcessor {
     
     // 用于LLM客户端的接口
     public interface LLMClient {
-        String chat(List<Map<String, String>> history) throws Exception;
-        String extractAssistantMessage(String response);
+        ChatResponse chat(List<Map<String, String>> history) throws Exception;
+        
+        default String chatStream(List<Map<String, String>> history, LLMStreamListener listener) throws Exception {
+            String content = chat(history).getContent();
+            listener.onToken(content);
+            return content;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package io.zhijian.tools.mcp.console;
+
+import java.util.List;
+
+import io.modelcontextprotocol.spec.prompt.Prompt;
+import io.modelcontextprotocol.spec.tool.Tool;
+
+/**
+ * 服务模式下使用的界面
+ * 会话的回答通过接口返回，不再输出到控制台；过程日志全部丢弃，只保留带会话标识的警告和错误
+ */
+public class QuietConsoleUI extends ConsoleUI {
+    
+    private final String label;
+    
+    public QuietConsoleUI(String label) {
+        this.label = label;
+    }
+    
+    @Override
+    public void showWelcome() {
+    }
+    
+    @Override
+    public void showUserPrompt() {
+    }
+    
+    @Override
+    public void showAvailableTools(List<Tool> tools) {
+    }
+    
+    @Override
+    public void showAvailablePrompts(List<Prompt> prompts) {
+    }
+    
+    @Override
+    public void showGoodbye() {
+    }
+    
+    @Override
+    public void userOutput(String message) {
+    }
+    
+    @Override
+    public void logInfo(String message) {
+    }
+    
+    @Override
+    public void logSuccess(String message) {
+    }
+    
+    @Override
+    public void logWarning(String message) {
+        super.logWarning("[" + label + "] " + message);
+    }
+    
+    @Override
+    public void logError(String message) {
+        super.logError("[" + label + "] " + message);
+    }
+    
+    @Override
+    public void logTool(String message) {
+    }
+    
+    @Override
+    public void logLLM(String message) {
+    }
+    
+    @Override
+    public void assistantOutput(String message) {
+    }
+    
+    @Override
+    public void assistantStreamStart(boolean draft) {
+    }
+    
+    @Override
+    public void assistantStreamToken(String token) {
+    }
+    
+    @Override
+    public void assistantStreamNotice(String notice) {
+    }
+    
+    @Override
+    public void assistantStreamEnd() {
+    }
+}
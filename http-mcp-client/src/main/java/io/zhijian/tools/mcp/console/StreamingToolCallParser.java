@@ -0,0 +1,106 @@
+package io.zhijian.tools.mcp.console;
+
+import io.zhijian.tools.mcp.client.LLMStreamListener;
+
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * 流式工具调用解析器
+ * 在LLM回复生成过程中增量识别【工具调用】...【工具调用结束】块：
+ * 块外的普通文本转发给显示监听器，块开始时通知界面，块结束时立即把完整的块交给回调（例如提前派发执行）
+ * 标记可能被拆在多段增量中，疑似标记开头的尾部文本会暂存到下一段增量再判断
+ */
+public class StreamingToolCallParser implements LLMStreamListener {
+    
+    static final String START = "【工具调用】";
+    static final String END = "【工具调用结束】";
+    
+    private final LLMStreamListener textListener;
+    private final IntConsumer onToolCallStart;
+    private final Consumer<String> onToolCallComplete;
+    private final StringBuilder pending = new StringBuilder();
+    private final StringBuilder block = new StringBuilder();
+    private boolean insideBlock;
+    private int toolCallCount;
+    
+    /**
+     * @param textListener 接收工具调用块之外的文本
+     * @param onToolCallStart 每检测到一个工具调用块开始时回调，参数是该块的序号（从 1 开始）
+     * @param onToolCallComplete 每个工具调用块完整结束时回调，参数是包含起止标记的完整块
+     */
+    public StreamingToolCallParser(LLMStreamListener textListener, IntConsumer onToolCallStart,
+                                   Consumer<String> onToolCallComplete) {
+        this.textListener = textListener;
+        this.onToolCallStart = onToolCallStart;
+        this.onToolCallComplete = onToolCallComplete;
+    }
+    
+    @Override
+    public void onToken(String token) {
+        pending.append(token);
+        while (true) {
+            if (insideBlock) {
+                int end = pending.indexOf(END);
+                if (end < 0) {
+                    // 块内内容先收集起来，只在缓冲区保留可能是结束标记开头的尾部
+                    int keep = Math.min(pending.length(), END.length() - 1);
+                    block.append(pending, 0, pending.length() - keep);
+                    pending.delete(0, pending.length() - keep);
+                    return;
+                }
+                block.append(pending, 0, end).append(END);
+                pending.delete(0, end + END.length());
+                insideBlock = false;
+                onToolCallComplete.accept(block.toString());
+            } else {
+                int start = pending.indexOf(START);
+                if (start < 0) {
+                    int keep = partialMarkerLength();
+                    emit(pending.length() - keep);
+                    return;
+                }
+                emit(start);
+                pending.delete(0, START.length());
+                block.setLength(0);
+                block.append(START);
+                insideBlock = true;
+                toolCallCount++;
+                onToolCallStart.accept(toolCallCount);
+            }
+        }
+    }
+    
+    /**
+     * 流结束时输出暂存的文本，未闭合的工具调用块不会派发
+     */
+    public void finish() {
+        if (!insideBlock) {
+            emit(pending.length());
+        }
+        pending.setLength(0);
+    }
+    
+    public int getToolCallCount() {
+        return toolCallCount;
+    }
+    
+    private void emit(int length) {
+        if (length > 0) {
+            textListener.onToken(pending.substring(0, length));
+            pending.delete(0, length);
+        }
+    }
+    
+    /**
+     * 缓冲区末尾与开始标记前缀重合的最大长度
+     */
+    private int partialMarkerLength() {
+        for (int k = Math.min(pending.length(), START.length() - 1); k > 0; k--) {
+            if (START.startsWith(pending.substring(pending.length() - k))) {
+                return k;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,58 @@
+package io.zhijian.tools.mcp.console;
+
+import java.util.Map;
+
+/**
+ * 本地 token 估算
+ * 不依赖具体模型的分词器：中日韩文字和全角符号按每字 1 个 token，其余字符按每 4 个 1 个 token，
+ * 每条消息另加固定的格式开销。估算值只用于上下文预算，不要求与服务端计费完全一致
+ */
+public class TokenEstimator {
+    
+    private static final int MESSAGE_OVERHEAD = 4;
+    
+    private TokenEstimator() {}
+    
+    /**
+     * 估算一段文本的 token 数
+     */
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int wide = 0;
+        int narrow = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (isWide(codePoint)) {
+                wide++;
+            } else {
+                narrow++;
+            }
+        }
+        return wide + (narrow + 3) / 4;
+    }
+    
+    /**
+     * 估算一条消息的 token 数，包括 role、tool_calls 等所有字段
+     */
+    public static int estimate(Map<String, String> message) {
+        int tokens = MESSAGE_OVERHEAD;
+        for (String value : message.values()) {
+            tokens += estimate(value);
+        }
+        return tokens;
+    }
+    
+    private static boolean isWide(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        if (script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL) {
+            return true;
+        }
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(codePoint);
+        return block == Character.UnicodeBlock.CJK_SYMBOLS_AND_PUNCTUATION
+                || block == Character.UnicodeBlock.HALFWIDTH_AND_FULLWIDTH_FORMS;
+    }
+}
@@ -0,0 +1,217 @@
+package io.zhijian.tools.mcp.console;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 工具调用依赖规划
+ * 同一条消息中的工具调用可以用“编号: s1”标识，后面的调用在参数中写 "$s1" 引用该步骤的结果。
+ * 规划器根据引用关系构建有向无环图，按拓扑顺序分成若干波次：同一波次内的调用互不依赖，可以并发执行，
+ * 这样 (a*b)+(c/d) 这类链式计算在一轮对话内就能完成，不需要额外的LLM往返
+ */
+public class ToolCallPlanner {
+    
+    private static final Pattern REFERENCE = Pattern.compile("^\\$([A-Za-z0-9_\\-]+)$");
+    private static final Pattern NUMERIC_RESULT = Pattern.compile("^Result:\\s*(-?[0-9.]+(?:[eE][-+]?[0-9]+)?)$");
+    
+    private ToolCallPlanner() {}
+    
+    /**
+     * 一个工具调用步骤
+     */
+    public static class Step {
+        final int index;
+        final String id;
+        final String toolName;
+        final String paramsJson;
+        final int start;
+        final int end;
+        JsonNode params;
+        Set<String> dependencies = new LinkedHashSet<>();
+        String error;
+        
+        Step(int index, String id, String toolName, String paramsJson, int start, int end) {
+            this.index = index;
+            this.id = id;
+            this.toolName = toolName;
+            this.paramsJson = paramsJson;
+            this.start = start;
+            this.end = end;
+        }
+        
+        boolean hasDependencies() {
+            return !dependencies.isEmpty();
+        }
+    }
+    
+    /**
+     * 解析参数并按依赖关系分波次
+     * 参数无法解析、引用了不存在的编号、依赖的步骤规划失败或存在循环引用的步骤会记录 error，不出现在任何波次中
+     */
+    static List<List<Step>> plan(List<Step> steps, ObjectMapper mapper) {
+        Map<String, Step> byId = new HashMap<>();
+        for (Step step : steps) {
+            if (step.id == null) {
+                continue;
+            }
+            if (byId.containsKey(step.id)) {
+                step.error = "编号重复: " + step.id;
+            } else {
+                byId.put(step.id, step);
+            }
+        }
+        
+        for (Step step : steps) {
+            if (step.error != null) {
+                continue;
+            }
+            try {
+                step.params = mapper.readTree(step.paramsJson);
+            } catch (Exception e) {
+                step.error = "参数不是合法的JSON: " + e.getMessage();
+                continue;
+            }
+            for (String reference : references(step.params)) {
+                if (!byId.containsKey(reference)) {
+                    step.error = "引用了不存在的步骤: $" + reference;
+                    break;
+                }
+                step.dependencies.add(reference);
+            }
+        }
+        
+        // 依赖的步骤规划失败时，后续步骤也无法执行；先沿依赖传递失败，避免在下面被误判为循环引用
+        boolean propagated = true;
+        while (propagated) {
+            propagated = false;
+            for (Step step : steps) {
+                if (step.error != null) {
+                    continue;
+                }
+                for (String dependency : step.dependencies) {
+                    if (byId.get(dependency).error != null) {
+                        step.error = "依赖的步骤执行失败: $" + dependency;
+                        propagated = true;
+                        break;
+                    }
+                }
+            }
+        }
+        
+        // Kahn 算法逐层剥离入度为 0 的步骤
+        List<List<Step>> waves = new ArrayList<>();
+        Set<String> done = new LinkedHashSet<>();
+        List<Step> remaining = new ArrayList<>();
+        for (Step step : steps) {
+            if (step.error == null) {
+                remaining.add(step);
+            }
+        }
+        while (!remaining.isEmpty()) {
+            List<Step> wave = new ArrayList<>();
+            for (Step step : remaining) {
+                if (done.containsAll(step.dependencies)) {
+                    wave.add(step);
+                }
+            }
+            if (wave.isEmpty()) {
+                for (Step step : remaining) {
+                    step.error = "步骤之间存在循环引用";
+                }
+                break;
+            }
+            remaining.removeAll(wave);
+            for (Step step : wave) {
+                if (step.id != null) {
+                    done.add(step.id);
+                }
+            }
+            waves.add(wave);
+        }
+        return waves;
+    }
+    
+    /**
+     * 参数中所有形如 "$编号" 的引用
+     */
+    static Set<String> references(JsonNode node) {
+        Set<String> references = new LinkedHashSet<>();
+        collectReferences(node, references);
+        return references;
+    }
+    
+    private static void collectReferences(JsonNode node, Set<String> references) {
+        if (node == null) {
+            return;
+        }
+        if (node.isTextual()) {
+            Matcher matcher = REFERENCE.matcher(node.asText().trim());
+            if (matcher.matches()) {
+                references.add(matcher.group(1));
+            }
+        } else if (node.isContainerNode()) {
+            for (JsonNode child : node) {
+                collectReferences(child, references);
+            }
+        }
+    }
+    
+    /**
+     * 用已完成步骤的输出替换参数中的引用，返回新的参数树
+     */
+    static JsonNode resolve(JsonNode node, Map<String, String> outputs) {
+        if (node.isTextual()) {
+            Matcher matcher = REFERENCE.matcher(node.asText().trim());
+            if (matcher.matches() && outputs.containsKey(matcher.group(1))) {
+                return toValue(outputs.get(matcher.group(1)));
+            }
+            return node;
+        }
+        if (node.isObject()) {
+            ObjectNode copy = ((ObjectNode) node).objectNode();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                copy.set(field.getKey(), resolve(field.getValue(), outputs));
+            }
+            return copy;
+        }
+        if (node.isArray()) {
+            ArrayNode copy = ((ArrayNode) node).arrayNode();
+            for (JsonNode child : node) {
+                copy.add(resolve(child, outputs));
+            }
+            return copy;
+        }
+        return node;
+    }
+    
+    /**
+     * 工具输出转成参数值：“Result: 数字”取数值，其他输出按原文本传递
+     */
+    static JsonNode toValue(String toolOutput) {
+        Matcher matcher = NUMERIC_RESULT.matcher(toolOutput.trim());
+        if (matcher.matches()) {
+            try {
+                return DoubleNode.valueOf(Double.parseDouble(matcher.group(1)));
+            } catch (NumberFormatException e) {
+                // 按文本传递
+            }
+        }
+        return TextNode.valueOf(toolOutput.trim());
+    }
+}
@@ -1,31 +1,49 @@
 package io.zhijian.tools.mcp.console;
 
-import io.modelcontextprotocol.client.McpSyncClient;
 import io.modelcontextprotocol.spec.content.Content;
 import io.modelcontextprotocol.spec.content.TextContent;
 import io.modelcontextprotocol.spec.tool.CallToolRequest;
 import io.modelcontextprotocol.spec.tool.CallToolResult;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.zhijian.tools.mcp.client.ToolCall;
+import io.zhijian.tools.mcp.config.AgentConfig;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * 工具执行器
  * 负责解析工具调用请求、执行MCP工具、处理结果
+ * 支持两种调用来源：LLM原生返回的函数调用（executeToolCalls），以及回复文本中的【工具调用】标记（processToolCalls）
+ * 同一条消息中的多个工具调用通过 MCP 连接池并发执行，并发数受每个服务器的许可上限约束，结果按原顺序拼接
+ * 调用之间可以用“编号”和 "$编号" 声明依赖，由 ToolCallPlanner 分波次执行
  */
 public class ToolExecutor {
     
-    private final McpSyncClient mcpClient;
+    // 所有工具调用共享同一个 ObjectMapper，避免每次调用都重新创建
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> PARAMS_TYPE = new TypeReference<Map<String, Object>>() {};
+    private static final Pattern TOOL_CALL_PATTERN = Pattern.compile("【工具调用】\\s*(?:编号:\\s*([^\\n]+?)\\s*\\n\\s*)?工具名称:\\s*([^\\n]+)\\s*参数:\\s*([^【]+)【工具调用结束】");
+    
+    private final McpClientPool mcpClients;
     private final ConsoleUI ui;
+    private final Duration callTimeout;
     
-    public ToolExecutor(McpSyncClient mcpClient, ConsoleUI ui) {
-        this.mcpClient = mcpClient;
+    public ToolExecutor(McpClientPool mcpClients, ConsoleUI ui) {
+        this.mcpClients = mcpClients;
         this.ui = ui;
-        new ObjectMapper();
+        this.callTimeout = Duration.ofSeconds(AgentConfig.TOOL_CALL_TIMEOUT_SECONDS);
     }
     
     /**
@@ -35,55 +53,252 @@ public class ToolExecutor {
         return message.contains("【工具调用】") && message.contains("【工具调用结束】");
     }
     
+    /**
+     * 提前派发一个完整的工具调用块，在LLM继续生成的同时执行工具
+     * 解析规则与 processToolCalls 相同，无法解析的块和引用了其他步骤结果的块留给 processToolCalls 按原流程处理
+     */
+    public void dispatchEarly(String toolCallBlock, PrefetchedToolCalls prefetched) {
+        Matcher matcher = TOOL_CALL_PATTERN.matcher(toolCallBlock);
+        if (!matcher.find()) {
+            return;
+        }
+        String toolName = matcher.group(2).trim();
+        String paramsJson = matcher.group(3).trim();
+        JsonNode params;
+        try {
+            params = MAPPER.readTree(paramsJson);
+        } catch (Exception e) {
+            return;
+        }
+        if (!ToolCallPlanner.references(params).isEmpty()) {
+            return;
+        }
+        prefetched.add(PrefetchedToolCalls.key(toolName, paramsJson), submit(toolName, params));
+    }
+    
+    /**
+     * 提前派发一个参数已经完整的原生函数调用，在LLM继续生成的同时执行工具
+     * 引用了同一回复中其他调用结果的调用留给 executeToolCalls 按依赖执行
+     */
+    public void dispatchEarly(ToolCall toolCall, PrefetchedToolCalls prefetched) {
+        JsonNode params;
+        try {
+            params = MAPPER.readTree(toolCall.getArguments());
+        } catch (Exception e) {
+            return;
+        }
+        if (!ToolCallPlanner.references(params).isEmpty()) {
+            return;
+        }
+        prefetched.add(PrefetchedToolCalls.key(toolCall.getName(), toolCall.getArguments()),
+                submit(toolCall.getName(), params));
+    }
+    
+    /**
+     * 执行一组原生函数调用
+     * 每个调用按它在回复中的位置编号（从 1 开始），参数中写 "$1" 即引用第 1 个调用的结果；
+     * 与文本标记一样经 ToolCallPlanner 分波次执行，互不依赖的调用并发启动（已经提前派发的直接复用），
+     * 按原顺序返回每个调用的结果文本；失败的调用返回错误说明，由LLM在下一轮决定如何处理
+     */
+    public List<String> executeToolCalls(List<ToolCall> toolCalls, PrefetchedToolCalls prefetched) {
+        List<ToolCallPlanner.Step> steps = new ArrayList<>();
+        for (ToolCall toolCall : toolCalls) {
+            steps.add(new ToolCallPlanner.Step(steps.size(), String.valueOf(steps.size() + 1), toolCall.getName(),
+                    toolCall.getArguments(), 0, 0));
+        }
+        
+        List<String> results = new ArrayList<>();
+        for (Outcome outcome : runPlanned(steps, prefetched)) {
+            if (outcome.error != null) {
+                ui.logError("工具调用失败: " + outcome.error);
+                results.add("工具调用失败: " + outcome.error);
+            } else {
+                results.add(outcome.output);
+            }
+        }
+        if (!toolCalls.isEmpty()) {
+            ui.logSuccess("完成 " + toolCalls.size() + " 个函数调用");
+        }
+        return results;
+    }
+    
     /**
      * 处理工具调用并返回结果
      */
     public String processToolCalls(String message) throws Exception {
-        Pattern pattern = Pattern.compile("【工具调用】\\s*工具名称:\\s*([^\\n]+)\\s*参数:\\s*([^【]+)【工具调用结束】");
-        Matcher matcher = pattern.matcher(message);
-        
-        StringBuilder result = new StringBuilder();
-        int lastEnd = 0;
-        int toolCallCount = 0;
+        return processToolCalls(message, null);
+    }
+    
+    /**
+     * 处理工具调用并返回结果
+     * 按依赖关系分波次执行：同一波次的调用一起启动（已经提前派发的直接复用），
+     * 等这一波全部完成后把结果代入下一波的 "$编号" 引用，最后按原顺序拼接结果
+     */
+    public String processToolCalls(String message, PrefetchedToolCalls prefetched) throws Exception {
+        Matcher matcher = TOOL_CALL_PATTERN.matcher(message);
         
+        List<ToolCallPlanner.Step> steps = new ArrayList<>();
         while (matcher.find()) {
-            toolCallCount++;
-            result.append(message, lastEnd, matcher.start());
-            
-            String toolName = matcher.group(1).trim();
-            String paramsJson = matcher.group(2).trim();
-            
-            try {
-                ui.logInfo("执行第 " + toolCallCount + " 个工具调用: " + toolName);
-                String toolResult = executeSingleTool(toolName, paramsJson);
-                result.append(toolResult);
-            } catch (Exception e) {
-                ui.logError("工具调用失败: " + e.getMessage());
-                result.append("【工具调用失败】").append(e.getMessage()).append("【错误结束】");
-            }
-            
-            lastEnd = matcher.end();
+            String id = matcher.group(1) != null ? matcher.group(1).trim() : null;
+            steps.add(new ToolCallPlanner.Step(steps.size(), id, matcher.group(2).trim(), matcher.group(3).trim(),
+                    matcher.start(), matcher.end()));
         }
+        Outcome[] outcomes = runPlanned(steps, prefetched);
         
+        StringBuilder result = new StringBuilder();
+        int lastEnd = 0;
+        for (ToolCallPlanner.Step step : steps) {
+            result.append(message, lastEnd, step.start);
+            Outcome outcome = outcomes[step.index];
+            result.append(outcome.error != null
+                    ? failure(outcome.error)
+                    : "【工具执行结果】" + outcome.output + "【结果结束】");
+            lastEnd = step.end;
+        }
         result.append(message.substring(lastEnd));
         
-        if (toolCallCount > 0) {
-            ui.logSuccess("完成 " + toolCallCount + " 个工具调用");
+        if (!steps.isEmpty()) {
+            ui.logSuccess("完成 " + steps.size() + " 个工具调用");
         }
         
         return result.toString();
     }
     
-    private String executeSingleTool(String toolName, String paramsJson) throws Exception {
-        ObjectNode params = (ObjectNode) new ObjectMapper().readTree(paramsJson);
-        Map<String, Object> paramMap = new ObjectMapper().convertValue(params, 
-            new com.fasterxml.jackson.core.type.TypeReference<Map<String, Object>>() {});
+    /**
+     * 按依赖关系分波次执行：同一波次的调用一起启动，等这一波全部完成后把结果代入下一波的 "$编号" 引用
+     * @return 每个步骤的结果，下标与 step.index 对应
+     */
+    private Outcome[] runPlanned(List<ToolCallPlanner.Step> steps, PrefetchedToolCalls prefetched) {
+        List<List<ToolCallPlanner.Step>> waves = ToolCallPlanner.plan(steps, MAPPER);
+        if (waves.size() > 1) {
+            ui.logInfo("工具调用之间存在依赖，分 " + waves.size() + " 个波次执行");
+        }
         
-        ui.logTool("正在调用工具: " + toolName + "，参数: " + paramsJson);
-        CallToolResult toolResult = mcpClient.callTool(new CallToolRequest(toolName, paramMap));
-        String toolOutput = extractToolResult(toolResult);
+        Outcome[] outcomes = new Outcome[steps.size()];
+        for (ToolCallPlanner.Step step : steps) {
+            if (step.error != null) {
+                outcomes[step.index] = Outcome.failed(step.error);
+            }
+        }
         
-        return "【工具执行结果】" + toolOutput + "【结果结束】";
+        Map<String, String> outputs = new HashMap<>();
+        for (List<ToolCallPlanner.Step> wave : waves) {
+            List<CompletableFuture<String>> running = new ArrayList<>();
+            for (ToolCallPlanner.Step step : wave) {
+                running.add(start(step, outputs, prefetched));
+            }
+            // 无依赖的步骤都在第一波，之后不会再有可以复用的提前派发
+            if (prefetched != null) {
+                prefetched.cancelRemaining();
+            }
+            for (int i = 0; i < wave.size(); i++) {
+                ToolCallPlanner.Step step = wave.get(i);
+                CompletableFuture<String> call = running.get(i);
+                if (call == null) {
+                    outcomes[step.index] = Outcome.failed("依赖的步骤执行失败: $"
+                            + String.join(", $", step.dependencies));
+                    continue;
+                }
+                try {
+                    String output = await(call);
+                    if (step.id != null) {
+                        outputs.put(step.id, output);
+                    }
+                    outcomes[step.index] = Outcome.succeeded(output);
+                } catch (Exception e) {
+                    outcomes[step.index] = Outcome.failed(describeFailure(e));
+                }
+            }
+        }
+        if (prefetched != null) {
+            prefetched.cancelRemaining();
+        }
+        return outcomes;
+    }
+    
+    /**
+     * 启动一个步骤：无依赖且已提前派发的直接复用，否则代入依赖结果后提交
+     * 依赖的步骤没有成功时返回 null
+     */
+    private CompletableFuture<String> start(ToolCallPlanner.Step step, Map<String, String> outputs,
+                                            PrefetchedToolCalls prefetched) {
+        int index = step.index + 1;
+        if (!step.hasDependencies()) {
+            CompletableFuture<String> early = prefetched != null
+                    ? prefetched.take(PrefetchedToolCalls.key(step.toolName, step.paramsJson))
+                    : null;
+            if (early != null) {
+                ui.logInfo("第 " + index + " 个工具调用已在生成过程中提前执行: " + step.toolName);
+                return early;
+            }
+            ui.logInfo("执行第 " + index + " 个工具调用: " + step.toolName);
+            ui.logTool("正在调用工具: " + step.toolName + "，参数: " + step.paramsJson);
+            return submit(step.toolName, step.params);
+        }
+        if (!outputs.keySet().containsAll(step.dependencies)) {
+            return null;
+        }
+        JsonNode params = ToolCallPlanner.resolve(step.params, outputs);
+        ui.logInfo("执行第 " + index + " 个工具调用: " + step.toolName + "（代入 $"
+                + String.join(", $", step.dependencies) + "）");
+        ui.logTool("正在调用工具: " + step.toolName + "，参数: " + params);
+        return submit(step.toolName, params);
+    }
+    
+    private String describeFailure(Exception e) {
+        return e instanceof TimeoutException
+                ? "工具调用超时（" + callTimeout.getSeconds() + " 秒）"
+                : e.getMessage();
+    }
+    
+    private String failure(String error) {
+        ui.logError("工具调用失败: " + error);
+        return "【工具调用失败】" + error + "【错误结束】";
+    }
+    
+    /**
+     * 通过连接池异步调用工具，并发许可和超时由连接池统一控制
+     */
+    private CompletableFuture<String> submit(String toolName, JsonNode params) {
+        Map<String, Object> paramMap;
+        try {
+            paramMap = MAPPER.convertValue(params, PARAMS_TYPE);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return mcpClients.callTool(new CallToolRequest(toolName, paramMap), callTimeout)
+                .map(this::extractToolResult)
+                .toFuture();
+    }
+    
+    private static String await(CompletableFuture<String> result) throws Exception {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+    
+    /**
+     * 单个步骤的执行结果，output 和 error 只有一个不为 null
+     */
+    private static class Outcome {
+        final String output;
+        final String error;
+        
+        private Outcome(String output, String error) {
+            this.output = output;
+            this.error = error;
+        }
+        
+        static Outcome succeeded(String output) {
+            return new Outcome(output, null);
+        }
+        
+        static Outcome failed(String error) {
+            return new Outcome(null, error);
+        }
     }
     
     public String extractToolResult(CallToolResult result) {
@@ -97,7 +312,7 @@ public class ToolExecutor {
     }
     
     public String extractToolNameFromMessage(String message) {
-        Pattern pattern = Pattern.compile("【工具调用】\\s*工具名称:\\s*([^\\n]+)");
+        Pattern pattern = Pattern.compile("【工具调用】\\s*(?:编号:[^\\n]*\\n\\s*)?工具名称:\\s*([^\\n]+)");
         Matcher matcher = pattern.matcher(message);
         return matcher.find() ? matcher.group(1).trim() : "未知工具";
     }
@@ -107,4 +322,4 @@ public class ToolExecutor {
         Matcher matcher = pattern.matcher(message);
         return matcher.find() ? matcher.group(1).trim() : "无结果";
     }
-}
\ No newline at end of file
+}
@@ -5,23 +5,42 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
 import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import io.modelcontextprotocol.server.McpAsyncServer;
 import io.modelcontextprotocol.server.McpServer;
+import io.modelcontextprotocol.server.McpServerFeatures;
 import io.modelcontextprotocol.server.McpSyncServer;
 import io.modelcontextprotocol.server.transport.HttpServletSseServerTransportProvider;
 import io.modelcontextprotocol.spec.logging.LoggingMessageNotification;
 import io.modelcontextprotocol.spec.logging.LoggingLevel;
 import io.modelcontextprotocol.spec.initialization.ServerCapabilities;
+import io.zhijian.tools.mcp.async.AsyncSpecifications;
+import io.zhijian.tools.mcp.cache.ToolResultCache;
 import io.zhijian.tools.mcp.prompts.ToolResultAnalysisPrompt;
 import io.zhijian.tools.mcp.resources.MemoryResource;
 import io.zhijian.tools.mcp.resources.MemoryResourceManager;
+import io.zhijian.tools.mcp.resources.OffHeapResourceAllocator;
+import io.zhijian.tools.mcp.resources.ResourceChangeNotifier;
+import io.zhijian.tools.mcp.resources.ResourceStore;
 import io.zhijian.tools.mcp.tools.CalculatorTool;
+import io.zhijian.tools.mcp.tools.ExpressionTool;
 import io.zhijian.tools.mcp.tools.GreetingTool;
+import io.zhijian.tools.mcp.tools.MemoryListTool;
+import io.zhijian.tools.mcp.tools.MemoryReadTool;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import javax.annotation.PostConstruct;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * MCP服务器主类
+ * 通过 mcp.server.mode 在同步（McpSyncServer）和异步（McpAsyncServer）两种模式之间切换
  */
 @SpringBootApplication(exclude = {
     DataSourceAutoConfiguration.class,
@@ -31,8 +50,27 @@ public class MyServer {
 
     @Autowired
     private HttpServletSseServerTransportProvider transportProvider;
+
+    @Autowired
+    private ToolResultCache toolResultCache;
+
+    @Autowired
+    private Scheduler mcpHandlerScheduler;
+
+    @Autowired
+    private ResourceStore resourceStore;
+
+    @Autowired
+    private OffHeapResourceAllocator offHeapResourceAllocator;
+
+    @Autowired
+    private ResourceChangeNotifier resourceChangeNotifier;
+
+    @Value("${mcp.server.mode:sync}")
+    private String serverMode;
     
     private McpSyncServer syncServer;
+    private McpAsyncServer asyncServer;
 
     /**
      * 启动MCP服务器
@@ -41,41 +79,47 @@ public class MyServer {
     @PostConstruct
     public void startServer() {
         System.setProperty("file.encoding", "UTF-8");
-        System.out.println("Starting MCP Server...");
+        System.out.println("Starting MCP Server (" + serverMode + " mode)...");
         
         try {
-            // 初始化服务器
-            syncServer = McpServer.sync(transportProvider)
-                    .serverInfo("my-server", "1.0.0")
-                    .capabilities(ServerCapabilities.builder()
-                            .resources(true, true)
-                            .tools(true)
-                            .prompts(true)
-                            .logging()
-                            .build())
-                    .build();
-
-            // 初始化内存资源
+            // 初始化内存资源，资源的写入、删除和淘汰经通知器合并后在后台推送给客户端
             System.out.println("Initializing memory resource...");
-            MemoryResourceManager.getInstance().setResource("memory://resource", "Initial resource value");
-            
-            // 添加工具和资源
-            System.out.println("Adding calculator tool...");
-            syncServer.addTool(CalculatorTool.createTool());
-            System.out.println("Adding memory resource...");
-            syncServer.addResource(MemoryResource.createMemoryResource());
-            System.out.println("Adding greeting tool...");
-            syncServer.addTool(GreetingTool.createTool());
-            System.out.println("Adding tool result prompt...");
-            syncServer.addPrompt(ToolResultAnalysisPrompt.createPrompt());
-
-            System.out.println("Server initialization completed.");
-            syncServer.loggingNotification(LoggingMessageNotification.builder()
-                            .level(LoggingLevel.INFO)
-                            .logger("custom-logger")
-                            .data("Server initialized successfully.")
-                    .build());
+            offHeapResourceAllocator.attach(resourceStore);
+            resourceChangeNotifier.start(this::notifyResourceChanges);
+            MemoryResourceManager.getInstance().useStore(resourceStore);
+            MemoryResourceManager.getInstance().useAllocator(offHeapResourceAllocator);
+            MemoryResourceManager.getInstance().useNotifier(resourceChangeNotifier);
+            // 已从映射文件恢复的值不覆盖，否则每次重启都会丢掉恢复的内容
+            if (!MemoryResourceManager.getInstance().hasResource("memory://resource")) {
+                MemoryResourceManager.getInstance().setResource("memory://resource", "Initial resource value");
+            }
+
+            // 创建工具、资源和Prompt定义
+            System.out.println("Creating calculator, expression, greeting, memory_list and memory_read tools...");
+            List<McpServerFeatures.SyncToolSpecification> tools = new ArrayList<>();
+            tools.add(toolResultCache.cacheIfDeterministic(CalculatorTool.class, CalculatorTool.createTool()));
+            tools.add(toolResultCache.cacheIfDeterministic(ExpressionTool.class, ExpressionTool.createTool()));
+            tools.add(toolResultCache.cacheIfDeterministic(GreetingTool.class, GreetingTool.createTool()));
+            tools.add(MemoryListTool.createTool());
+            tools.add(MemoryReadTool.createTool());
+            List<McpServerFeatures.SyncResourceSpecification> resources = new ArrayList<>();
+            resources.add(MemoryResource.createMemoryResource());
+            resources.add(MemoryResource.createMemoryResourceTemplate());
+            McpServerFeatures.SyncPromptSpecification toolResultPrompt = ToolResultAnalysisPrompt.createPrompt();
+
+            LoggingMessageNotification initialized = LoggingMessageNotification.builder()
+                    .level(LoggingLevel.INFO)
+                    .logger("custom-logger")
+                    .data("Server initialized successfully.")
+                    .build();
 
+            if ("async".equalsIgnoreCase(serverMode)) {
+                startAsyncServer(tools, resources, toolResultPrompt, initialized);
+            } else {
+                startSyncServer(tools, resources, toolResultPrompt, initialized);
+            }
+            System.out.println("Server initialization completed. " + toolResultCache + ", " + resourceStore
+                    + ", " + resourceChangeNotifier);
         }
         catch (JsonProcessingException e) {
             System.err.println("Error creating tool schema: " + e.getMessage());
@@ -87,6 +131,87 @@ public class MyServer {
         }
     }
 
+    /**
+     * 同步模式：处理器在请求线程上执行
+     */
+    private void startSyncServer(List<McpServerFeatures.SyncToolSpecification> tools,
+                                 List<McpServerFeatures.SyncResourceSpecification> resources,
+                                 McpServerFeatures.SyncPromptSpecification toolResultPrompt,
+                                 LoggingMessageNotification initialized) {
+        syncServer = McpServer.sync(transportProvider)
+                .serverInfo("my-server", "1.0.0")
+                .capabilities(createCapabilities())
+                .resourceTemplates(List.of(MemoryResource.MEMORY_RESOURCE_TEMPLATE))
+                .build();
+
+        System.out.println("Adding tools...");
+        for (McpServerFeatures.SyncToolSpecification tool : tools) {
+            syncServer.addTool(tool);
+        }
+        System.out.println("Adding memory resources...");
+        for (McpServerFeatures.SyncResourceSpecification resource : resources) {
+            syncServer.addResource(resource);
+        }
+        System.out.println("Adding tool result prompt...");
+        syncServer.addPrompt(toolResultPrompt);
+
+        syncServer.loggingNotification(initialized);
+    }
+
+    /**
+     * 异步模式：处理器被调度到有界的 mcpHandlerScheduler 上执行，不阻塞 Servlet 线程
+     */
+    private void startAsyncServer(List<McpServerFeatures.SyncToolSpecification> tools,
+                                  List<McpServerFeatures.SyncResourceSpecification> resources,
+                                  McpServerFeatures.SyncPromptSpecification toolResultPrompt,
+                                  LoggingMessageNotification initialized) {
+        asyncServer = McpServer.async(transportProvider)
+                .serverInfo("my-server", "1.0.0")
+                .capabilities(createCapabilities())
+                .resourceTemplates(List.of(MemoryResource.MEMORY_RESOURCE_TEMPLATE))
+                .build();
+
+        System.out.println("Adding async tools...");
+        for (McpServerFeatures.SyncToolSpecification tool : tools) {
+            asyncServer.addTool(AsyncSpecifications.tool(tool, mcpHandlerScheduler)).block();
+        }
+        System.out.println("Adding async memory resources...");
+        for (McpServerFeatures.SyncResourceSpecification resource : resources) {
+            asyncServer.addResource(AsyncSpecifications.resource(resource, mcpHandlerScheduler)).block();
+        }
+        System.out.println("Adding async tool result prompt...");
+        asyncServer.addPrompt(AsyncSpecifications.prompt(toolResultPrompt, mcpHandlerScheduler)).block();
+
+        asyncServer.loggingNotification(initialized).block();
+    }
+
+    /**
+     * 推送一个批次的资源变更，在通知器的线程上执行
+     * SDK 只提供向所有会话广播的 notifyClients，没有暴露每个会话的 resources/subscribe 状态，
+     * 因此 resources/updated 发给所有已连接的会话，而不只是订阅了该 URI 的会话
+     */
+    private Mono<Void> notifyResourceChanges(Set<String> updatedUris, boolean listChanged) {
+        Mono<Void> notifications = Mono.empty();
+        for (String uri : updatedUris) {
+            notifications = notifications.then(Mono.defer(() ->
+                    transportProvider.notifyClients("notifications/resources/updated", Map.of("uri", uri))));
+        }
+        if (listChanged) {
+            notifications = notifications.then(Mono.defer(() ->
+                    transportProvider.notifyClients("notifications/resources/list_changed", null)));
+        }
+        return notifications;
+    }
+
+    private ServerCapabilities createCapabilities() {
+        return ServerCapabilities.builder()
+                .resources(true, true)
+                .tools(true)
+                .prompts(true)
+                .logging()
+                .build();
+    }
+
     /**
      * 启动Web应用
      * @param args 命令行参数
@@ -94,4 +219,4 @@ public class MyServer {
     public static void main(String[] args) {
         SpringApplication.run(MyServer.class, args);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package io.zhijian.tools.mcp.async;
+
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.prompt.GetPromptRequest;
+import io.modelcontextprotocol.spec.prompt.GetPromptResult;
+import io.modelcontextprotocol.spec.resource.ReadResourceRequest;
+import io.modelcontextprotocol.spec.resource.ReadResourceResult;
+import io.modelcontextprotocol.spec.tool.CallToolResult;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * 同步定义到异步定义的适配器
+ * 工具、资源、Prompt 仍然以同步方式实现，注册到 McpAsyncServer 时处理器被调度到有界的 Scheduler 上执行，
+ * 不占用 Servlet 容器线程
+ */
+public class AsyncSpecifications {
+
+    private AsyncSpecifications() {}
+
+    public static McpServerFeatures.AsyncToolSpecification tool(
+            McpServerFeatures.SyncToolSpecification specification, Scheduler scheduler) {
+        BiFunction<McpSyncServerExchange, Map<String, Object>, CallToolResult> call = specification.getCall();
+        return new McpServerFeatures.AsyncToolSpecification(
+                specification.getTool(),
+                (exchange, arguments) -> Mono
+                        .fromCallable(() -> call.apply(new McpSyncServerExchange(exchange), arguments))
+                        .subscribeOn(scheduler));
+    }
+
+    public static McpServerFeatures.AsyncResourceSpecification resource(
+            McpServerFeatures.SyncResourceSpecification specification, Scheduler scheduler) {
+        BiFunction<McpSyncServerExchange, ReadResourceRequest, ReadResourceResult> readHandler = specification.getReadHandler();
+        return new McpServerFeatures.AsyncResourceSpecification(
+                specification.getResource(),
+                (exchange, request) -> Mono
+                        .fromCallable(() -> readHandler.apply(new McpSyncServerExchange(exchange), request))
+                        .subscribeOn(scheduler));
+    }
+
+    public static McpServerFeatures.AsyncPromptSpecification prompt(
+            McpServerFeatures.SyncPromptSpecification specification, Scheduler scheduler) {
+        BiFunction<McpSyncServerExchange, GetPromptRequest, GetPromptResult> promptHandler = specification.getPromptHandler();
+        return new McpServerFeatures.AsyncPromptSpecification(
+                specification.getPrompt(),
+                (exchange, request) -> Mono
+                        .fromCallable(() -> promptHandler.apply(new McpSyncServerExchange(exchange), request))
+                        .subscribeOn(scheduler));
+    }
+}
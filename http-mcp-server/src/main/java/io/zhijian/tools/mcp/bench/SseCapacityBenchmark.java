@@ -0,0 +1,186 @@
+package io.zhijian.tools.mcp.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SSE 并发容量压测
+ * 按固定速率打开 N 个 /sse 长连接，记录收到 endpoint 事件（会话建立成功）的连接数和建立耗时，
+ * 保持一段时间后统计仍然存活的连接数。分别以 mcp.server.threads=platform / virtual 启动服务器各跑一次进行对比
+ *
+ * 用法：java -cp http-mcp-server.jar io.zhijian.tools.mcp.bench.SseCapacityBenchmark
+ *          [url=http://localhost:8080/sse] [connections=2000] [openPerSecond=500] [holdSeconds=30]
+ *
+ * 注意：压测机需要足够的文件描述符（ulimit -n）和临时端口
+ */
+public class SseCapacityBenchmark {
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "http://localhost:8080/sse";
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int openPerSecond = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        int holdSeconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+
+        System.out.println("SSE capacity benchmark: url=" + url + ", connections=" + connections
+                + ", openPerSecond=" + openPerSecond + ", holdSeconds=" + holdSeconds);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(CONNECT_TIMEOUT_SECONDS))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+
+        CountDownLatch settled = new CountDownLatch(connections);
+        List<SseConnection> opened = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failures = new AtomicInteger();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, openPerSecond);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            long due = start + i * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+
+            SseConnection connection = new SseConnection(settled, failures);
+            opened.add(connection);
+            client.sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(connection))
+                    .whenComplete((response, error) -> {
+                        if (error != null || response.statusCode() != 200) {
+                            connection.fail();
+                        }
+                    });
+        }
+
+        if (!settled.await(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            System.out.println("Some connections did not settle within " + CONNECT_TIMEOUT_SECONDS + "s");
+        }
+        long rampMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        List<Long> latencies = new ArrayList<>();
+        synchronized (opened) {
+            for (SseConnection connection : opened) {
+                if (connection.connectedNanos > 0) {
+                    latencies.add(connection.connectedNanos - connection.startNanos);
+                }
+            }
+        }
+        Collections.sort(latencies);
+
+        System.out.println("Ramp finished in " + rampMillis + " ms");
+        System.out.println("Established: " + latencies.size() + "/" + connections + ", failed: " + failures.get());
+        if (!latencies.isEmpty()) {
+            System.out.println("Session setup latency ms: p50=" + millis(percentile(latencies, 50))
+                    + ", p99=" + millis(percentile(latencies, 99))
+                    + ", max=" + millis(latencies.get(latencies.size() - 1)));
+        }
+
+        System.out.println("Holding connections for " + holdSeconds + "s...");
+        TimeUnit.SECONDS.sleep(holdSeconds);
+
+        int alive = 0;
+        synchronized (opened) {
+            for (SseConnection connection : opened) {
+                if (connection.isAlive()) {
+                    alive++;
+                }
+                connection.close();
+            }
+        }
+        System.out.println("Alive after hold: " + alive + "/" + latencies.size());
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1_000_000.0);
+    }
+
+    /**
+     * 单个 SSE 连接，第一条 data 行（endpoint 事件）到达即视为会话建立成功
+     * 逐行订阅响应体，不为每个连接占用一个线程
+     */
+    private static class SseConnection implements Flow.Subscriber<String> {
+
+        private final CountDownLatch settled;
+        private final AtomicInteger failures;
+        private final long startNanos = System.nanoTime();
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private volatile long connectedNanos;
+        private volatile Flow.Subscription subscription;
+
+        private static final int PENDING = 0;
+        private static final int CONNECTED = 1;
+        private static final int CLOSED = 2;
+
+        SseConnection(CountDownLatch settled, AtomicInteger failures) {
+            this.settled = settled;
+            this.failures = failures;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.startsWith("data:") && state.compareAndSet(PENDING, CONNECTED)) {
+                connectedNanos = System.nanoTime();
+                settled.countDown();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            fail();
+        }
+
+        @Override
+        public void onComplete() {
+            fail();
+        }
+
+        /**
+         * 连接失败或被服务器关闭，会话建立之前失败的计入失败数
+         */
+        void fail() {
+            if (state.getAndSet(CLOSED) == PENDING) {
+                failures.incrementAndGet();
+                settled.countDown();
+            }
+        }
+
+        boolean isAlive() {
+            return state.get() == CONNECTED;
+        }
+
+        void close() {
+            state.set(CLOSED);
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package io.zhijian.tools.mcp.cache;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记确定性工具
+ * 相同参数总是得到相同结果的工具，其调用结果可以被 {@link ToolResultCache} 缓存
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Deterministic {
+}
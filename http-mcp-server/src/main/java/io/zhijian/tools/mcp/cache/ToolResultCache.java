@@ -0,0 +1,227 @@
+package io.zhijian.tools.mcp.cache;
+
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.tool.CallToolResult;
+import io.modelcontextprotocol.spec.tool.Tool;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * 工具结果缓存
+ * 包装确定性工具的调用处理器，相同的规范化参数直接返回缓存结果，不再重复执行工具
+ * 按条目数量（LRU）和存活时间（TTL）淘汰
+ */
+public class ToolResultCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, CacheEntry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ToolResultCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        // accessOrder = true，最近访问的条目排在末尾
+        this.entries = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true);
+    }
+
+    /**
+     * 如果工具类标记了 {@link Deterministic}，返回带缓存的工具定义，否则原样返回
+     * maxSize 不大于 0 时视为关闭缓存
+     */
+    public McpServerFeatures.SyncToolSpecification cacheIfDeterministic(
+            Class<?> toolClass, McpServerFeatures.SyncToolSpecification specification) {
+        if (maxSize <= 0 || !toolClass.isAnnotationPresent(Deterministic.class)) {
+            return specification;
+        }
+        return wrap(specification);
+    }
+
+    /**
+     * 包装工具定义，调用前先查缓存
+     */
+    public McpServerFeatures.SyncToolSpecification wrap(McpServerFeatures.SyncToolSpecification specification) {
+        Tool tool = specification.getTool();
+        BiFunction<McpSyncServerExchange, Map<String, Object>, CallToolResult> call = specification.getCall();
+        String toolName = tool.getName();
+
+        return new McpServerFeatures.SyncToolSpecification(tool, (exchange, arguments) -> {
+            String key = buildKey(toolName, arguments);
+            CallToolResult cached = get(key);
+            if (cached != null) {
+                return cached;
+            }
+
+            CallToolResult result = call.apply(exchange, arguments);
+            // 只缓存成功结果，参数错误等异常情况每次都重新执行
+            if (result != null && !Boolean.TRUE.equals(result.getIsError())) {
+                put(key, result);
+            }
+            return result;
+        });
+    }
+
+    private CallToolResult get(String key) {
+        synchronized (entries) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > System.currentTimeMillis()) {
+                    hits.incrementAndGet();
+                    return entry.result;
+                }
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private void put(String key, CallToolResult result) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            entries.put(key, new CacheEntry(result, now + ttlMillis));
+            // 超出容量时淘汰最久未使用的条目，过期条目在读取时惰性清理
+            Iterator<CacheEntry> iterator = entries.values().iterator();
+            while (entries.size() > maxSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 构建缓存键：工具名 + 规范化后的参数
+     * 对象按键排序，数值统一按 double 输出，使 {"a": 1, "b": 2} 与 {"b": 2.0, "a": 1} 命中同一条目
+     */
+    static String buildKey(String toolName, Map<String, Object> arguments) {
+        StringBuilder key = new StringBuilder(toolName).append(':');
+        appendCanonical(key, arguments);
+        return key.toString();
+    }
+
+    private static void appendCanonical(StringBuilder out, Object value) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof Map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                sorted.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<String, Object> entry : sorted.entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                appendString(out, entry.getKey());
+                out.append(':');
+                appendCanonical(out, entry.getValue());
+            }
+            out.append('}');
+        } else if (value instanceof List) {
+            out.append('[');
+            boolean first = true;
+            for (Object item : (List<?>) value) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                appendCanonical(out, item);
+            }
+            out.append(']');
+        } else if (value instanceof Number) {
+            appendNumber(out, (Number) value);
+        } else if (value instanceof Boolean) {
+            out.append(value);
+        } else {
+            appendString(out, value.toString());
+        }
+    }
+
+    /**
+     * 数值按精确的十进制值规范化：2 和 2.0 得到同一个键，
+     * 超出 double 精度的 long、BigDecimal 不会因为舍入而与其他数值共用一个键
+     */
+    private static void appendNumber(StringBuilder out, Number number) {
+        BigDecimal exact;
+        try {
+            exact = number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+        } catch (NumberFormatException e) {
+            // NaN、Infinity
+            out.append(number);
+            return;
+        }
+        out.append(exact.stripTrailingZeros().toPlainString());
+    }
+
+    private static void appendString(StringBuilder out, String text) {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ToolResultCache{size=%d, maxSize=%d, ttl=%dms, hits=%d, misses=%d, evictions=%d, hitRate=%.2f}",
+                size(), maxSize, ttlMillis, getHitCount(), getMissCount(), getEvictionCount(), getHitRate());
+    }
+
+    private static class CacheEntry {
+        final CallToolResult result;
+        final long expiresAt;
+
+        CacheEntry(CallToolResult result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package io.zhijian.tools.mcp.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
 import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import org.apache.coyote.ProtocolHandler;
+
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.modelcontextprotocol.server.transport.HttpServletSseServerTransportProvider;
+import io.zhijian.tools.mcp.cache.ToolResultCache;
+import io.zhijian.tools.mcp.resources.BoundedResourceStore;
+import io.zhijian.tools.mcp.resources.OffHeapResourceAllocator;
+import io.zhijian.tools.mcp.resources.ResourceChangeNotifier;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
 
 /**
  * MCP 服务器配置类
@@ -30,4 +44,91 @@ public class McpServerConfig implements WebMvcConfigurer {
         bean.setLoadOnStartup(1);
         return bean;
     }
-} 
\ No newline at end of file
+
+    /**
+     * 确定性工具的结果缓存，关闭时工具按原样注册
+     */
+    @Bean
+    public ToolResultCache toolResultCache(
+            @Value("${mcp.tool-cache.enabled:true}") boolean enabled,
+            @Value("${mcp.tool-cache.max-size:1024}") int maxSize,
+            @Value("${mcp.tool-cache.ttl-seconds:600}") long ttlSeconds) {
+        return new ToolResultCache(enabled ? maxSize : 0, ttlSeconds * 1000);
+    }
+
+    /**
+     * 内存资源的有界存储，按条目数和估算字节数淘汰最久未使用的资源
+     */
+    @Bean(destroyMethod = "close")
+    public BoundedResourceStore resourceStore(
+            @Value("${mcp.resources.max-entries:10000}") int maxEntries,
+            @Value("${mcp.resources.max-weight-bytes:67108864}") long maxWeightBytes,
+            @Value("${mcp.resources.default-ttl-seconds:0}") long defaultTtlSeconds,
+            @Value("${mcp.resources.expiry-check-seconds:30}") long expiryCheckSeconds) {
+        BoundedResourceStore store = new BoundedResourceStore(maxEntries, maxWeightBytes, defaultTtlSeconds * 1000);
+        store.startExpiryTask(expiryCheckSeconds * 1000);
+        return store;
+    }
+
+    /**
+     * 大资源的堆外分配器，配置了存储目录时使用内存映射文件，重启后资源可以恢复
+     */
+    @Bean
+    public OffHeapResourceAllocator offHeapResourceAllocator(
+            @Value("${mcp.resources.offheap-threshold-bytes:1048576}") int thresholdBytes,
+            @Value("${mcp.resources.storage-dir:}") String storageDir) {
+        return new OffHeapResourceAllocator(thresholdBytes,
+                storageDir.isEmpty() ? null : Paths.get(storageDir));
+    }
+
+    /**
+     * 资源变更通知器，批次窗口内的变更合并后在独立线程上推送
+     */
+    @Bean(destroyMethod = "close")
+    public ResourceChangeNotifier resourceChangeNotifier(
+            @Value("${mcp.resources.notify.batch-window-millis:50}") long batchWindowMillis,
+            @Value("${mcp.resources.notify.max-pending:256}") int maxPending,
+            @Value("${mcp.resources.notify.timeout-seconds:10}") long timeoutSeconds) {
+        return new ResourceChangeNotifier(batchWindowMillis, maxPending, Duration.ofSeconds(timeoutSeconds));
+    }
+
+    /**
+     * 异步模式下执行工具、资源、Prompt 处理器的调度器
+     * 平台线程模式下线程数和排队任务数都有上限，超出时快速失败，而不是无限制地堆积；
+     * 虚拟线程模式下每个处理器一个虚拟线程，并发量由 Tomcat 的最大连接数限制
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler mcpHandlerScheduler(
+            @Value("${mcp.server.threads:platform}") String threads,
+            @Value("${mcp.server.handler-threads:64}") int handlerThreads,
+            @Value("${mcp.server.handler-queue-size:10000}") int handlerQueueSize) {
+        if ("virtual".equalsIgnoreCase(threads)) {
+            ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            if (executor != null) {
+                System.out.println("MCP handlers run on virtual threads");
+                return Schedulers.fromExecutorService(executor, "mcp-handler");
+            }
+            System.out.println("Virtual threads require JDK 21+, MCP handlers fall back to platform threads");
+        }
+        return Schedulers.newBoundedElastic(handlerThreads, handlerQueueSize, "mcp-handler");
+    }
+
+    /**
+     * 虚拟线程模式下替换 Tomcat 的请求处理线程池
+     * Servlet 请求（包括同步模式下的工具调用）都在虚拟线程上执行，不再受 server.tomcat.threads.max 限制
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer(
+            @Value("${mcp.server.threads:platform}") String threads) {
+        if (!"virtual".equalsIgnoreCase(threads)) {
+            return protocolHandler -> {};
+        }
+        ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        if (executor == null) {
+            System.out.println("Virtual threads require JDK 21+, Tomcat keeps its platform thread pool");
+            return protocolHandler -> {};
+        }
+        System.out.println("Tomcat requests run on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+package io.zhijian.tools.mcp.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程支持
+ * 项目按 Java 11 编译，Executors.newVirtualThreadPerTaskExecutor 通过反射获取，
+ * 运行在 JDK 21 及以上时可用，低版本 JDK 返回 null，由调用方回退到平台线程
+ */
+public class VirtualThreads {
+
+    private static final Method NEW_EXECUTOR = findFactory();
+
+    private VirtualThreads() {}
+
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的执行器，不支持时返回 null
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (NEW_EXECUTOR == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) NEW_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Failed to create virtual thread executor: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Method findFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package io.zhijian.tools.mcp.resources;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 有界资源存储
+ * 按条目数量和估算字节数两个维度限制容量，超出时淘汰最久未使用（LRU）的条目；
+ * 每个条目可以单独设置存活时间（TTL），读取时惰性过期，并可启动后台任务定期清理
+ */
+public class BoundedResourceStore implements ResourceStore, AutoCloseable {
+
+    /** 每个条目的固定开销估算（键、条目对象、链表节点） */
+    private static final long ENTRY_OVERHEAD_BYTES = 64;
+
+    private final int maxEntries;
+    private final long maxWeightBytes;
+    private final long defaultTtlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+    private final List<EvictionListener> listeners = new CopyOnWriteArrayList<>();
+
+    private long totalWeight;
+    private ScheduledExecutorService expiryExecutor;
+
+    /**
+     * @param maxEntries 最大条目数
+     * @param maxWeightBytes 最大估算字节数，不大于 0 表示不限制
+     * @param defaultTtlMillis 默认存活时间（毫秒），不大于 0 表示永不过期
+     */
+    public BoundedResourceStore(int maxEntries, long maxWeightBytes, long defaultTtlMillis) {
+        this.maxEntries = maxEntries;
+        this.maxWeightBytes = maxWeightBytes;
+        this.defaultTtlMillis = defaultTtlMillis;
+        // accessOrder = true，最近访问的条目排在末尾
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Override
+    public void put(String key, Object value, long ttlMillis) {
+        long ttl = ttlMillis > 0 ? ttlMillis : defaultTtlMillis;
+        long expiresAt = ttl > 0 ? System.currentTimeMillis() + ttl : Long.MAX_VALUE;
+        Entry entry = new Entry(value, weigh(key, value), expiresAt);
+        // 刚写入的条目不参与淘汰，单个超出容量的值只会挤掉其他所有条目而仍然超限，直接拒绝
+        if (maxWeightBytes > 0 && entry.weight > maxWeightBytes) {
+            throw new IllegalArgumentException("资源 " + key + " 的估算大小 " + entry.weight
+                    + " 字节超过存储容量 " + maxWeightBytes + " 字节");
+        }
+
+        List<Removal> removals = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            totalWeight += entry.weight;
+            if (previous != null) {
+                totalWeight -= previous.weight;
+                removals.add(new Removal(key, previous.value, RemovalCause.REPLACED));
+            }
+            evictIfNeeded(key, removals);
+        }
+        notifyListeners(removals);
+    }
+
+    @Override
+    public Object get(String key) {
+        Removal expired = null;
+        Object value = null;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.isExpired(System.currentTimeMillis())) {
+                    entries.remove(key);
+                    totalWeight -= entry.weight;
+                    expired = new Removal(key, entry.value, RemovalCause.EXPIRED);
+                } else {
+                    value = entry.value;
+                }
+            }
+        }
+        if (expired != null) {
+            notifyListeners(List.of(expired));
+        }
+        return value;
+    }
+
+    @Override
+    public Object remove(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.remove(key);
+            if (entry != null) {
+                totalWeight -= entry.weight;
+            }
+        }
+        if (entry == null) {
+            return null;
+        }
+        notifyListeners(List.of(new Removal(key, entry.value, RemovalCause.EXPLICIT)));
+        return entry.value;
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public void clear() {
+        List<Removal> removals = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                removals.add(new Removal(e.getKey(), e.getValue().value, RemovalCause.EXPLICIT));
+            }
+            entries.clear();
+            totalWeight = 0;
+        }
+        notifyListeners(removals);
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public Set<String> keys() {
+        long now = System.currentTimeMillis();
+        Set<String> keys = new LinkedHashSet<>();
+        synchronized (this) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (!e.getValue().isExpired(now)) {
+                    keys.add(e.getKey());
+                }
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public void addEvictionListener(EvictionListener listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized long getTotalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * 清理所有已过期的条目
+     */
+    public void cleanUp() {
+        long now = System.currentTimeMillis();
+        List<Removal> removals = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Entry> e = it.next();
+                if (e.getValue().isExpired(now)) {
+                    it.remove();
+                    totalWeight -= e.getValue().weight;
+                    removals.add(new Removal(e.getKey(), e.getValue().value, RemovalCause.EXPIRED));
+                }
+            }
+        }
+        notifyListeners(removals);
+    }
+
+    /**
+     * 启动后台过期清理任务，过期的条目即使没有被读取也会及时移除并通知监听器
+     */
+    public synchronized void startExpiryTask(long periodMillis) {
+        if (expiryExecutor != null || periodMillis <= 0) {
+            return;
+        }
+        expiryExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "resource-store-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        expiryExecutor.scheduleWithFixedDelay(this::cleanUp, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (expiryExecutor != null) {
+            expiryExecutor.shutdownNow();
+            expiryExecutor = null;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ResourceStore{entries=" + entries.size() + "/" + maxEntries
+                + ", weightBytes=" + totalWeight + (maxWeightBytes > 0 ? "/" + maxWeightBytes : "") + "}";
+    }
+
+    /**
+     * 先移除已过期的条目，仍然超出容量时从最久未使用的一端淘汰，刚写入的条目不参与淘汰
+     */
+    private void evictIfNeeded(String justWritten, List<Removal> removals) {
+        if (!overCapacity()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            if (e.getValue().isExpired(now)) {
+                it.remove();
+                totalWeight -= e.getValue().weight;
+                removals.add(new Removal(e.getKey(), e.getValue().value, RemovalCause.EXPIRED));
+            }
+        }
+
+        it = entries.entrySet().iterator();
+        while (overCapacity() && it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            if (e.getKey().equals(justWritten)) {
+                continue;
+            }
+            it.remove();
+            totalWeight -= e.getValue().weight;
+            removals.add(new Removal(e.getKey(), e.getValue().value, RemovalCause.SIZE));
+        }
+    }
+
+    private boolean overCapacity() {
+        return entries.size() > maxEntries || (maxWeightBytes > 0 && totalWeight > maxWeightBytes);
+    }
+
+    private void notifyListeners(List<Removal> removals) {
+        for (Removal removal : removals) {
+            for (EvictionListener listener : listeners) {
+                try {
+                    listener.onRemoval(removal.key, removal.value, removal.cause);
+                } catch (Exception e) {
+                    System.err.println("Resource eviction listener failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 估算条目占用的内存字节数
+     */
+    static long weigh(String key, Object value) {
+        long weight = ENTRY_OVERHEAD_BYTES + 2L * key.length();
+        if (value instanceof OffHeapResource) {
+            // 直接内存和映射文件都按实际字节数计算，容量上限同时约束堆外内存和磁盘占用
+            weight += ((OffHeapResource) value).size();
+        } else if (value instanceof byte[]) {
+            weight += ((byte[]) value).length;
+        } else if (value instanceof CharSequence) {
+            weight += 2L * ((CharSequence) value).length();
+        } else if (value != null) {
+            weight += value.toString().getBytes(StandardCharsets.UTF_8).length;
+        }
+        return weight;
+    }
+
+    private static class Entry {
+        final Object value;
+        final long weight;
+        final long expiresAt;
+
+        Entry(Object value, long weight, long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    private static class Removal {
+        final String key;
+        final Object value;
+        final RemovalCause cause;
+
+        Removal(String key, Object value, RemovalCause cause) {
+            this.key = key;
+            this.value = value;
+            this.cause = cause;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package io.zhijian.tools.mcp.resources;
 import io.modelcontextprotocol.server.McpServerFeatures;
 import io.modelcontextprotocol.spec.resource.Resource;
 import io.modelcontextprotocol.spec.resource.ResourceContents;
+import io.modelcontextprotocol.spec.resource.ResourceTemplate;
 import io.modelcontextprotocol.spec.resource.TextResourceContents;
 import io.modelcontextprotocol.spec.resource.ReadResourceResult;
 
@@ -12,10 +13,26 @@ import java.util.List;
 /**
  * 内存资源处理器
  * 用于管理MCP中的内存资源
+ * 除固定的 memory://resource 外，所有 memory://{namespace}/{key} 资源共用一个模板处理器，按请求中的 URI 读取，
+ * 不为每个键单独注册资源：resources/list 不随键的数量增长，键的发现通过 memory_list 工具按索引分页完成
  */
 public class MemoryResource {
     private static final String RESOURCE_URI = "memory://resource";
+    private static final String RESOURCE_URI_TEMPLATE = "memory://{namespace}/{key}";
     private static final String CONTENT_TYPE = "application/json";
+    /** 堆外资源每次读取解码的最大字节数 */
+    public static final int CHUNK_BYTES = 256 * 1024;
+
+    /**
+     * 通过 resources/templates/list 向客户端声明的资源模板
+     */
+    public static final ResourceTemplate MEMORY_RESOURCE_TEMPLATE = new ResourceTemplate(
+            RESOURCE_URI_TEMPLATE,
+            "Memory Resources",
+            "Resources stored in memory, addressed by namespace and key; use the memory_list tool to discover keys "
+                    + "page by page and the memory_read tool to read large values in chunks",
+            CONTENT_TYPE,
+            null);
 
     public static McpServerFeatures.SyncResourceSpecification createMemoryResource() {
         return new McpServerFeatures.SyncResourceSpecification(
@@ -25,18 +42,45 @@ public class MemoryResource {
                         "A resource stored in memory",
                         CONTENT_TYPE,
                         null),
-                (exchange, context) -> {
-                    List<ResourceContents> result = new ArrayList<>();
-                    
-                    // 获取资源管理器实例
-                    MemoryResourceManager manager = MemoryResourceManager.getInstance();
-                    
-                    // 获取资源内容
-                    Object value = manager.getResource(RESOURCE_URI);
-                    String content = value != null ? value.toString() : "Resource not found";
-                    result.add(new TextResourceContents(RESOURCE_URI, CONTENT_TYPE, content));
-                    
-                    return new ReadResourceResult(result);
-                });
+                (exchange, request) -> read(RESOURCE_URI));
+    }
+
+    /**
+     * 模板资源 memory://{namespace}/{key}
+     * 所有匹配模板的 URI 共用这一个处理器，按请求中的 URI 读取资源
+     */
+    public static McpServerFeatures.SyncResourceSpecification createMemoryResourceTemplate() {
+        return new McpServerFeatures.SyncResourceSpecification(
+                new Resource(
+                        RESOURCE_URI_TEMPLATE,
+                        "Memory Resources",
+                        "Resources stored in memory, addressed by namespace and key",
+                        CONTENT_TYPE,
+                        null),
+                (exchange, request) -> read(request.getUri()));
+    }
+
+    /**
+     * 读取资源内容
+     * 堆外资源（OffHeapResource）只解码第一块（CHUNK_BYTES），不会把完整文本放回堆上；
+     * 还有剩余内容时附加一条说明，客户端用 memory_read 工具从给出的偏移继续读取
+     */
+    static ReadResourceResult read(String uri) {
+        List<ResourceContents> result = new ArrayList<>();
+        Object value = MemoryResourceManager.getInstance().getResource(uri);
+        if (value instanceof OffHeapResource) {
+            OffHeapResource resource = (OffHeapResource) value;
+            OffHeapResource.Chunk chunk = resource.readText(0, CHUNK_BYTES);
+            result.add(new TextResourceContents(uri, CONTENT_TYPE, chunk.getText()));
+            if (chunk.getNextOffset() >= 0) {
+                result.add(new TextResourceContents(uri, "text/plain", "Truncated at byte " + chunk.getNextOffset()
+                        + " of " + resource.size() + "; call the memory_read tool with offset="
+                        + chunk.getNextOffset() + " to continue"));
+            }
+        } else {
+            String content = value != null ? value.toString() : "Resource not found";
+            result.add(new TextResourceContents(uri, CONTENT_TYPE, content));
+        }
+        return new ReadResourceResult(result);
     }
-} 
\ No newline at end of file
+}
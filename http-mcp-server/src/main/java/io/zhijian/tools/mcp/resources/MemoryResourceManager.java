@@ -1,39 +1,229 @@
 package io.zhijian.tools.mcp.resources;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
  * 内存资源管理器
  * 使用单例模式确保资源在整个应用中共享
+ * 资源保存在可替换的 {@link ResourceStore} 中，默认是有界的 {@link BoundedResourceStore}
+ * 配置了 {@link OffHeapResourceAllocator} 时，大文本资源保存在堆外
+ * 另外维护一个有序的键索引，按前缀分页列出资源，每页的开销只与页大小有关；
+ * 索引的增删与存储的写入、删除在同一把锁内完成，索引中的键和存储中的键保持一致
+ * 配置了 {@link ResourceChangeNotifier} 时，资源的写入、删除和淘汰都交给通知器合并后异步推送
  */
 public class MemoryResourceManager {
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final long DEFAULT_MAX_WEIGHT_BYTES = 64L * 1024 * 1024;
+
     private static final MemoryResourceManager instance = new MemoryResourceManager();
-    private final Map<String, Object> resources = new ConcurrentHashMap<>();
+    private final NavigableSet<String> index = new ConcurrentSkipListSet<>();
+    // 保护存储写入、删除与索引更新的原子性；淘汰监听器在存储的锁之外回调，先取这把锁再访问存储，不会死锁
+    private final Object indexLock = new Object();
+    private volatile ResourceStore store;
+    private volatile OffHeapResourceAllocator allocator;
+    private volatile ResourceChangeNotifier notifier;
 
-    private MemoryResourceManager() {}
+    private MemoryResourceManager() {
+        useStore(new BoundedResourceStore(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT_BYTES, 0));
+    }
 
     public static MemoryResourceManager getInstance() {
         return instance;
     }
 
+    /**
+     * 替换底层存储，原有资源不会迁移，键索引按新存储重建
+     */
+    public void useStore(ResourceStore store) {
+        store.addEvictionListener((key, value, cause) -> {
+            if (cause == ResourceStore.RemovalCause.REPLACED) {
+                return;
+            }
+            boolean removed;
+            synchronized (indexLock) {
+                // 同一个键可能在移除之后、回调之前被重新写入
+                removed = this.store == store && !store.containsKey(key) && index.remove(key);
+            }
+            if (removed) {
+                publish(key, true);
+            }
+        });
+        synchronized (indexLock) {
+            this.store = store;
+            index.clear();
+            index.addAll(store.keys());
+        }
+    }
+
+    public ResourceStore getStore() {
+        return store;
+    }
+
+    public void useAllocator(OffHeapResourceAllocator allocator) {
+        this.allocator = allocator;
+    }
+
+    public void useNotifier(ResourceChangeNotifier notifier) {
+        this.notifier = notifier;
+    }
+
     public void setResource(String key, Object value) {
-        resources.put(key, value);
+        put(key, value, 0);
+    }
+
+    /**
+     * 写入带存活时间的资源，过期后自动移除
+     */
+    public void setResource(String key, Object value, Duration ttl) {
+        put(key, value, ttl.toMillis());
     }
 
     public Object getResource(String key) {
-        return resources.get(key);
+        return store.get(key);
     }
 
     public void removeResource(String key) {
-        resources.remove(key);
+        boolean removed;
+        synchronized (indexLock) {
+            store.remove(key);
+            removed = index.remove(key);
+        }
+        if (removed) {
+            publish(key, true);
+        }
     }
 
     public boolean hasResource(String key) {
-        return resources.containsKey(key);
+        return store.containsKey(key);
     }
 
     public void clear() {
-        resources.clear();
+        synchronized (indexLock) {
+            store.clear();
+            index.clear();
+        }
+        ResourceChangeNotifier current = notifier;
+        if (current != null) {
+            current.resourceListChanged();
+        }
+    }
+
+    /**
+     * 按前缀分页列出资源键
+     * @param prefix 键前缀，为空时列出全部
+     * @param cursor 上一页返回的游标，为空时从头开始
+     * @param limit 每页最多返回的条数
+     */
+    public Page listResources(String prefix, String cursor, int limit) {
+        String from = prefix == null ? "" : prefix;
+        NavigableSet<String> candidates = index;
+        if (cursor != null && !cursor.isEmpty()) {
+            String after = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            candidates = index.tailSet(after, false);
+        } else if (!from.isEmpty()) {
+            candidates = index.tailSet(from, true);
+        }
+
+        List<String> keys = new ArrayList<>(Math.min(limit, 64));
+        String last = null;
+        boolean more = false;
+        for (String key : candidates) {
+            if (!key.startsWith(from)) {
+                if (key.compareTo(from) > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (keys.size() == limit) {
+                more = true;
+                break;
+            }
+            keys.add(key);
+            last = key;
+        }
+        String nextCursor = more
+                ? Base64.getUrlEncoder().withoutPadding().encodeToString(last.getBytes(StandardCharsets.UTF_8))
+                : null;
+        return new Page(keys, nextCursor);
+    }
+
+    /**
+     * 一页资源键，nextCursor 为 null 表示没有更多数据
+     */
+    public static class Page {
+        private final List<String> keys;
+        private final String nextCursor;
+
+        Page(List<String> keys, String nextCursor) {
+            this.keys = keys;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<String> getKeys() {
+            return keys;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * 存储拒绝写入（超出容量）时释放已经分配的堆外内存和文件
+     */
+    private void put(String key, Object value, long ttlMillis) {
+        // 堆外编码和写文件在锁外完成
+        Object prepared = prepare(key, value);
+        boolean added;
+        synchronized (indexLock) {
+            try {
+                store.put(key, prepared, ttlMillis);
+            } catch (IllegalArgumentException e) {
+                if (prepared instanceof OffHeapResource) {
+                    ((OffHeapResource) prepared).release();
+                }
+                throw e;
+            }
+            added = index.add(key);
+        }
+        publish(key, added);
+    }
+
+    /**
+     * 发布资源变更，新增或删除的资源同时意味着资源列表发生变化
+     * 只记录到通知器，不在写入线程上发送
+     */
+    private void publish(String key, boolean listChanged) {
+        ResourceChangeNotifier current = notifier;
+        if (current == null) {
+            return;
+        }
+        current.resourceUpdated(key);
+        if (listChanged) {
+            current.resourceListChanged();
+        }
+    }
+
+    /**
+     * 堆外存储失败时退回到堆上保存，不影响写入
+     */
+    private Object prepare(String key, Object value) {
+        OffHeapResourceAllocator current = allocator;
+        if (current == null) {
+            return value;
+        }
+        try {
+            return current.prepare(key, value);
+        } catch (IOException e) {
+            System.err.println("Failed to store resource " + key + " off-heap, keeping it on heap: " + e.getMessage());
+            return value;
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,121 @@
+package io.zhijian.tools.mcp.resources;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 堆外资源值
+ * UTF-8 字节保存在直接内存（DirectByteBuffer）或内存映射文件中，堆上不保留解码后的完整文本：
+ * 读取时按块解码（{@link #readText(long, int)}），一次请求在堆上只产生一个块大小的字符串
+ */
+public class OffHeapResource {
+
+    private final ByteBuffer buffer;
+    private final Path file;
+
+    private OffHeapResource(ByteBuffer buffer, Path file) {
+        this.buffer = buffer.asReadOnlyBuffer();
+        this.file = file;
+    }
+
+    /**
+     * 直接内存中的资源，进程退出后丢失
+     */
+    static OffHeapResource direct(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return new OffHeapResource(buffer, null);
+    }
+
+    /**
+     * 内存映射文件中的资源，文件只属于这一个值，同一个键的新值写入另一个文件
+     */
+    static OffHeapResource mapped(ByteBuffer buffer, Path file) {
+        return new OffHeapResource(buffer, file);
+    }
+
+    /**
+     * 从 offset 开始解码最多 maxBytes 个字节，块的结尾退回到完整字符的边界
+     */
+    public Chunk readText(long offset, int maxBytes) {
+        int start = (int) Math.max(0, Math.min(offset, buffer.capacity()));
+        int end = (int) Math.min((long) start + Math.max(1, maxBytes), buffer.capacity());
+        // 不在多字节字符中间截断：结尾落在续字节（10xxxxxx）上时向前退到字符起始位置
+        while (end > start && end < buffer.capacity() && (buffer.get(end) & 0xC0) == 0x80) {
+            end--;
+        }
+        if (end == start && start < buffer.capacity()) {
+            // maxBytes 小于一个字符时至少返回一个完整字符
+            end = start + 1;
+            while (end < buffer.capacity() && (buffer.get(end) & 0xC0) == 0x80) {
+                end++;
+            }
+        }
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(start).limit(end);
+        String text = StandardCharsets.UTF_8.decode(slice).toString();
+        return new Chunk(text, end < buffer.capacity() ? end : -1);
+    }
+
+    /**
+     * 资源字节的只读视图
+     */
+    public ByteBuffer bytes() {
+        return buffer.duplicate();
+    }
+
+    public int size() {
+        return buffer.capacity();
+    }
+
+    public boolean isMapped() {
+        return file != null;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * 释放资源：删除这个值自己的映射文件，直接内存由 GC 在缓冲区不可达后回收
+     */
+    void release() {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Failed to delete memory-mapped resource file " + file + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapResource{bytes=" + buffer.capacity() + (file != null ? ", file=" + file.getFileName() : "") + "}";
+    }
+
+    /**
+     * 解码后的一块文本，nextOffset 为 -1 表示已经读到结尾
+     */
+    public static class Chunk {
+        private final String text;
+        private final long nextOffset;
+
+        Chunk(String text, long nextOffset) {
+            this.text = text;
+            this.nextOffset = nextOffset;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public long getNextOffset() {
+            return nextOffset;
+        }
+    }
+}
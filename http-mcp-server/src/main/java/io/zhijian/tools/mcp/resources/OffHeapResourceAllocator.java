@@ -0,0 +1,145 @@
+package io.zhijian.tools.mcp.resources;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 堆外资源分配器
+ * 大于阈值的文本资源转成 {@link OffHeapResource}：配置了存储目录时写入文件并做内存映射，重启后可以恢复；
+ * 否则放在直接内存中。小资源原样保存在堆上。
+ * 每个值写入独立的版本文件（键的 base64url 编码加版本号），同一个键的新旧值不共用文件，
+ * 旧值被替换或淘汰时只删除它自己的文件，并发写入同一个键时不会误删新值的文件
+ */
+public class OffHeapResourceAllocator {
+
+    /** 文件名长度上限，超出的键不落盘，改用直接内存 */
+    private static final int MAX_FILE_NAME_LENGTH = 200;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final char VERSION_SEPARATOR = '.';
+
+    private final int thresholdBytes;
+    private final Path storageDir;
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * @param thresholdBytes 转为堆外存储的最小字节数，不大于 0 表示关闭
+     * @param storageDir 映射文件目录，为 null 时使用直接内存
+     */
+    public OffHeapResourceAllocator(int thresholdBytes, Path storageDir) {
+        this.thresholdBytes = thresholdBytes;
+        this.storageDir = storageDir;
+    }
+
+    /**
+     * 接入资源存储：恢复目录中已有的资源，并在资源被移除时释放堆外内存和文件
+     * 同一个键留下多个版本（写入新值后、删除旧文件前进程退出）时只恢复最新的版本
+     */
+    public void attach(ResourceStore store) throws IOException {
+        store.addEvictionListener((key, value, cause) -> {
+            if (value instanceof OffHeapResource) {
+                ((OffHeapResource) value).release();
+            }
+        });
+        if (storageDir == null) {
+            return;
+        }
+        Files.createDirectories(storageDir);
+        Map<String, Path> latest = new HashMap<>();
+        Map<String, Long> latestVersion = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(storageDir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                int separator = name.lastIndexOf(VERSION_SEPARATOR);
+                String key;
+                long fileVersion;
+                try {
+                    key = new String(Base64.getUrlDecoder().decode(separator < 0 ? name : name.substring(0, separator)),
+                            StandardCharsets.UTF_8);
+                    fileVersion = separator < 0 ? 0 : Long.parseLong(name.substring(separator + 1));
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                Long current = latestVersion.get(key);
+                if (current != null && current >= fileVersion) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                if (current != null) {
+                    Files.deleteIfExists(latest.get(key));
+                }
+                latest.put(key, file);
+                latestVersion.put(key, fileVersion);
+                version.accumulateAndGet(fileVersion, Math::max);
+            }
+        }
+        int restored = 0;
+        for (Map.Entry<String, Path> entry : latest.entrySet()) {
+            OffHeapResource resource = map(entry.getValue());
+            try {
+                store.put(entry.getKey(), resource, 0);
+                restored++;
+            } catch (IllegalArgumentException e) {
+                System.err.println("Skipping memory-mapped resource " + entry.getKey() + ": " + e.getMessage());
+                resource.release();
+            }
+        }
+        System.out.println("Restored " + restored + " memory-mapped resources from " + storageDir);
+    }
+
+    /**
+     * 按大小决定资源的存储方式，返回要放入存储的值
+     * 写入存储失败时调用方负责对返回的 OffHeapResource 调用 release
+     */
+    public Object prepare(String key, Object value) throws IOException {
+        if (thresholdBytes <= 0 || !(value instanceof CharSequence)) {
+            return value;
+        }
+        // UTF-8 至少每个字符一个字节，字符数不到阈值时不必编码
+        if (((CharSequence) value).length() < thresholdBytes) {
+            return value;
+        }
+        byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < thresholdBytes) {
+            return value;
+        }
+
+        String fileName = Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+        if (storageDir == null || fileName.length() > MAX_FILE_NAME_LENGTH) {
+            return OffHeapResource.direct(bytes);
+        }
+
+        // 先写临时文件再原子改名，重启恢复时不会读到写了一半的文件
+        Path target = storageDir.resolve(fileName + VERSION_SEPARATOR + version.incrementAndGet());
+        Path temp = Files.createTempFile(storageDir, fileName, TEMP_SUFFIX);
+        try {
+            Files.write(temp, bytes);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return map(target);
+    }
+
+    private static OffHeapResource map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return OffHeapResource.mapped(buffer, file);
+        }
+    }
+}
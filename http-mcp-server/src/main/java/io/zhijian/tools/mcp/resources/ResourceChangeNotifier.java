@@ -0,0 +1,165 @@
+package io.zhijian.tools.mcp.resources;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 资源变更通知器
+ * 资源写入、删除和淘汰时只把 URI 记入有界的待发送集合，由通知器自己的线程在批次窗口结束后统一发送，写入方从不等待客户端：
+ * 同一窗口内对同一 URI 的多次修改合并为一条 notifications/resources/updated，多次列表变化合并为一条
+ * notifications/resources/list_changed；同一时间最多一个批次在发送中，发送慢时新的变更继续合并；
+ * 待发送的 URI 超过上限时丢弃逐条通知，收敛为一次列表变化，客户端重新拉取即可
+ */
+public class ResourceChangeNotifier implements AutoCloseable {
+
+    private final long batchWindowMillis;
+    private final int maxPending;
+    private final Duration deliveryTimeout;
+    private final ScheduledExecutorService flusher;
+    private volatile Delivery delivery;
+
+    // 以下字段由 this 保护
+    private Set<String> pending = new LinkedHashSet<>();
+    private boolean listChanged;
+    private boolean overflowed;
+    private boolean scheduled;
+    private boolean inFlight;
+    private long batches;
+    private long merged;
+    private long overflows;
+    private long failures;
+
+    /**
+     * @param batchWindowMillis 批次窗口，窗口内的变更合并后一起发送
+     * @param maxPending 最多积压的不同 URI 数量
+     * @param deliveryTimeout 单个批次的发送超时
+     */
+    public ResourceChangeNotifier(long batchWindowMillis, int maxPending, Duration deliveryTimeout) {
+        this.batchWindowMillis = batchWindowMillis;
+        this.maxPending = Math.max(1, maxPending);
+        this.deliveryTimeout = deliveryTimeout;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "resource-change-notifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 发送一个批次的通知
+     */
+    @FunctionalInterface
+    public interface Delivery {
+        /**
+         * @param updatedUris 内容发生变化的资源 URI
+         * @param listChanged 资源列表是否发生变化（新增、删除或积压溢出）
+         */
+        Mono<Void> deliver(Set<String> updatedUris, boolean listChanged);
+    }
+
+    /**
+     * 设置通知的发送方式，之前记录的变更随下一个批次发送
+     */
+    public void start(Delivery delivery) {
+        this.delivery = delivery;
+        synchronized (this) {
+            if (!pending.isEmpty() || listChanged) {
+                scheduleIfNeeded();
+            }
+        }
+    }
+
+    public synchronized void resourceUpdated(String uri) {
+        if (overflowed) {
+            merged++;
+            return;
+        }
+        if (!pending.add(uri)) {
+            merged++;
+        } else if (pending.size() > maxPending) {
+            // 积压过多，丢弃逐条通知，改为通知客户端重新拉取列表
+            pending.clear();
+            listChanged = true;
+            overflowed = true;
+            overflows++;
+        }
+        scheduleIfNeeded();
+    }
+
+    public synchronized void resourceListChanged() {
+        if (listChanged) {
+            merged++;
+        }
+        listChanged = true;
+        scheduleIfNeeded();
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ResourceChangeNotifier{batches=" + batches + ", pending=" + pending.size() + ", merged=" + merged
+                + ", overflows=" + overflows + ", failures=" + failures + "}";
+    }
+
+    /**
+     * 正在发送时不再调度，等当前批次完成后再发送积压的变更
+     */
+    private void scheduleIfNeeded() {
+        if (scheduled || inFlight || delivery == null || flusher.isShutdown()) {
+            return;
+        }
+        scheduled = true;
+        flusher.schedule(this::flush, batchWindowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        Set<String> uris;
+        boolean changed;
+        synchronized (this) {
+            scheduled = false;
+            if (pending.isEmpty() && !listChanged) {
+                return;
+            }
+            uris = Collections.unmodifiableSet(pending);
+            changed = listChanged;
+            pending = new LinkedHashSet<>();
+            listChanged = false;
+            overflowed = false;
+            inFlight = true;
+            batches++;
+        }
+
+        try {
+            delivery.deliver(uris, changed)
+                    .timeout(deliveryTimeout)
+                    .subscribe(null, e -> {
+                        System.err.println("Failed to deliver resource notifications: " + e.getMessage());
+                        complete(true);
+                    }, () -> complete(false));
+        } catch (Exception e) {
+            System.err.println("Failed to deliver resource notifications: " + e.getMessage());
+            complete(true);
+        }
+    }
+
+    private synchronized void complete(boolean failed) {
+        inFlight = false;
+        if (failed) {
+            failures++;
+        }
+        if (!pending.isEmpty() || listChanged) {
+            scheduleIfNeeded();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.zhijian.tools.mcp.resources;
+
+import java.util.Set;
+
+/**
+ * 资源存储接口
+ * MemoryResourceManager 通过该接口读写资源，具体的容量限制、过期和淘汰策略由实现类决定
+ */
+public interface ResourceStore {
+
+    /**
+     * 写入资源
+     * @param ttlMillis 存活时间（毫秒），不大于 0 表示使用存储的默认存活时间
+     * @throws IllegalArgumentException 单个资源超出存储的容量上限
+     */
+    void put(String key, Object value, long ttlMillis);
+
+    /**
+     * 读取资源，不存在或已过期时返回 null
+     */
+    Object get(String key);
+
+    Object remove(String key);
+
+    boolean containsKey(String key);
+
+    void clear();
+
+    int size();
+
+    /**
+     * 当前所有未过期资源的键
+     */
+    Set<String> keys();
+
+    void addEvictionListener(EvictionListener listener);
+
+    /**
+     * 资源被移除的原因
+     */
+    enum RemovalCause {
+        /** 调用 remove 或 clear 显式移除 */
+        EXPLICIT,
+        /** 被同一个键的新值替换 */
+        REPLACED,
+        /** 超过存活时间 */
+        EXPIRED,
+        /** 超出条目数量或字节容量限制 */
+        SIZE
+    }
+
+    /**
+     * 资源移除监听器
+     * 在存储的锁之外回调，监听器中可以安全地访问存储
+     */
+    @FunctionalInterface
+    interface EvictionListener {
+        void onRemoval(String key, Object value, RemovalCause cause);
+    }
+}
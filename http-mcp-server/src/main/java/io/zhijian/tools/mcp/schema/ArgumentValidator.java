@@ -0,0 +1,153 @@
+package io.zhijian.tools.mcp.schema;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 工具参数校验器
+ * 由 {@link ToolSchemaRegistry} 根据参数类预先编译，校验时只做类型、枚举和必填检查，不再反射
+ */
+public class ArgumentValidator {
+
+    /**
+     * JSON Schema 中的基本类型
+     */
+    enum Type {
+        STRING("string"), NUMBER("number"), BOOLEAN("boolean"), ARRAY("array"), OBJECT("object");
+
+        final String schemaName;
+
+        Type(String schemaName) {
+            this.schemaName = schemaName;
+        }
+    }
+
+    /**
+     * 单个值的校验规则
+     */
+    static class Rule {
+        final Type type;
+        final Set<String> enumValues;
+        // ARRAY 的元素规则，或 OBJECT 中 additionalProperties 的值规则
+        final Rule elementRule;
+        // OBJECT 的属性规则，为 null 表示任意键
+        final ArgumentValidator objectValidator;
+
+        Rule(Type type, String[] enumValues, Rule elementRule, ArgumentValidator objectValidator) {
+            this.type = type;
+            this.enumValues = enumValues.length == 0
+                    ? Collections.<String>emptySet()
+                    : new LinkedHashSet<>(java.util.Arrays.asList(enumValues));
+            this.elementRule = elementRule;
+            this.objectValidator = objectValidator;
+        }
+    }
+
+    private final List<String> names;
+    private final List<Rule> rules;
+    private final List<String> requiredNames;
+
+    ArgumentValidator(List<String> names, List<Rule> rules, List<String> requiredNames) {
+        this.names = names;
+        this.rules = rules;
+        this.requiredNames = requiredNames;
+    }
+
+    /**
+     * 校验参数，返回错误信息列表，为空表示校验通过
+     */
+    public List<String> validate(Map<String, ?> arguments) {
+        List<String> errors = new ArrayList<>();
+        validate(arguments, "", errors);
+        return errors;
+    }
+
+    private void validate(Map<?, ?> arguments, String path, List<String> errors) {
+        if (arguments == null) {
+            if (!requiredNames.isEmpty()) {
+                errors.add("missing required " + String.join(", ", requiredNames));
+            }
+            return;
+        }
+        for (String required : requiredNames) {
+            if (arguments.get(required) == null) {
+                errors.add(path + required + " is required");
+            }
+        }
+        for (int i = 0; i < names.size(); i++) {
+            Object value = arguments.get(names.get(i));
+            if (value != null) {
+                check(rules.get(i), value, path + names.get(i), errors);
+            }
+        }
+    }
+
+    private static void check(Rule rule, Object value, String path, List<String> errors) {
+        switch (rule.type) {
+            case NUMBER:
+                if (!isNumber(value)) {
+                    errors.add(path + " must be a number");
+                }
+                return;
+            case BOOLEAN:
+                if (!(value instanceof Boolean)) {
+                    errors.add(path + " must be a boolean");
+                }
+                return;
+            case STRING:
+                if (!(value instanceof String)) {
+                    errors.add(path + " must be a string");
+                } else if (!rule.enumValues.isEmpty() && !rule.enumValues.contains(value)) {
+                    errors.add(path + " must be one of " + rule.enumValues);
+                }
+                return;
+            case ARRAY:
+                if (!(value instanceof List)) {
+                    errors.add(path + " must be an array");
+                    return;
+                }
+                if (rule.elementRule != null) {
+                    List<?> items = (List<?>) value;
+                    for (int i = 0; i < items.size(); i++) {
+                        check(rule.elementRule, items.get(i), path + "[" + i + "]", errors);
+                    }
+                }
+                return;
+            default:
+                if (!(value instanceof Map)) {
+                    errors.add(path + " must be an object");
+                    return;
+                }
+                Map<?, ?> map = (Map<?, ?>) value;
+                if (rule.objectValidator != null) {
+                    rule.objectValidator.validate(map, path + ".", errors);
+                } else if (rule.elementRule != null) {
+                    for (Map.Entry<?, ?> entry : map.entrySet()) {
+                        check(rule.elementRule, entry.getValue(), path + "." + entry.getKey(), errors);
+                    }
+                }
+        }
+    }
+
+    /**
+     * 兼容以字符串形式传入的数字，与工具处理器的解析方式保持一致
+     */
+    private static boolean isNumber(Object value) {
+        if (value instanceof Number) {
+            return true;
+        }
+        if (value instanceof String) {
+            try {
+                Double.parseDouble((String) value);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
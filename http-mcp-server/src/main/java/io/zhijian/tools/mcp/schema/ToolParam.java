@@ -0,0 +1,35 @@
+package io.zhijian.tools.mcp.schema;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 工具参数声明
+ * 标注在参数类的字段上，由 {@link ToolSchemaRegistry} 在启动时生成 JSON Schema 和参数校验器
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface ToolParam {
+
+    /**
+     * 参数名，默认使用字段名
+     */
+    String name() default "";
+
+    /**
+     * 参数说明
+     */
+    String description() default "";
+
+    /**
+     * 可选值列表，为空时不限制
+     */
+    String[] enumValues() default {};
+
+    /**
+     * 是否必填
+     */
+    boolean required() default false;
+}
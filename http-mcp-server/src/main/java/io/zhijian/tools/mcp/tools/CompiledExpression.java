@@ -0,0 +1,322 @@
+package io.zhijian.tools.mcp.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译后的算术表达式
+ * 将中缀表达式一次性解析为后缀指令序列，之后的每次求值只需在 double 栈上顺序执行指令
+ */
+public class CompiledExpression {
+
+    // 指令编码
+    private static final byte PUSH_CONST = 0;
+    private static final byte LOAD_VAR = 1;
+    private static final byte ADD = 2;
+    private static final byte SUB = 3;
+    private static final byte MUL = 4;
+    private static final byte DIV = 5;
+    private static final byte MOD = 6;
+    private static final byte POW = 7;
+    private static final byte NEG = 8;
+
+    private final String source;
+    private final byte[] code;
+    private final int[] operands;
+    private final double[] constants;
+    private final String[] variables;
+    private final int maxStackDepth;
+
+    private CompiledExpression(String source, byte[] code, int[] operands, double[] constants,
+                               String[] variables, int maxStackDepth) {
+        this.source = source;
+        this.code = code;
+        this.operands = operands;
+        this.constants = constants;
+        this.variables = variables;
+        this.maxStackDepth = maxStackDepth;
+    }
+
+    /**
+     * 规范化表达式文本，作为编译缓存的键
+     * 去掉运算符两侧的空白；两个数字/标识符之间的空白保留为一个空格，避免 "1 2" 被误当作 "12"
+     */
+    public static String normalize(String expression) {
+        StringBuilder normalized = new StringBuilder(expression.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+            if (pendingSpace && isWordChar(c) && isWordChar(normalized.charAt(normalized.length() - 1))) {
+                normalized.append(' ');
+            }
+            pendingSpace = false;
+            normalized.append(c);
+        }
+        return normalized.toString();
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+    }
+
+    /**
+     * 编译表达式，支持 + - * / % ^、括号、一元正负号、数字常量和变量名
+     */
+    public static CompiledExpression compile(String expression) {
+        Compiler compiler = new Compiler(normalize(expression));
+        return compiler.compile();
+    }
+
+    /**
+     * 使用给定的变量值求值
+     */
+    public double evaluate(Map<String, ?> bindings) {
+        double[] values = new double[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            Object value = bindings != null ? bindings.get(variables[i]) : null;
+            if (value == null) {
+                throw new IllegalArgumentException("Undefined variable: " + variables[i]);
+            }
+            values[i] = value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+        }
+
+        double[] stack = new double[maxStackDepth];
+        int top = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case PUSH_CONST:
+                    stack[++top] = constants[operands[pc]];
+                    break;
+                case LOAD_VAR:
+                    stack[++top] = values[operands[pc]];
+                    break;
+                case NEG:
+                    stack[top] = -stack[top];
+                    break;
+                case ADD:
+                    stack[top - 1] = stack[top - 1] + stack[top];
+                    top--;
+                    break;
+                case SUB:
+                    stack[top - 1] = stack[top - 1] - stack[top];
+                    top--;
+                    break;
+                case MUL:
+                    stack[top - 1] = stack[top - 1] * stack[top];
+                    top--;
+                    break;
+                case DIV:
+                    if (stack[top] == 0) {
+                        throw new ArithmeticException("Division by zero is not allowed.");
+                    }
+                    stack[top - 1] = stack[top - 1] / stack[top];
+                    top--;
+                    break;
+                case MOD:
+                    if (stack[top] == 0) {
+                        throw new ArithmeticException("Division by zero is not allowed.");
+                    }
+                    stack[top - 1] = stack[top - 1] % stack[top];
+                    top--;
+                    break;
+                default:
+                    stack[top - 1] = Math.pow(stack[top - 1], stack[top]);
+                    top--;
+                    break;
+            }
+        }
+        return stack[0];
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String[] getVariables() {
+        return variables.clone();
+    }
+
+    /**
+     * 递归下降编译器
+     * expression := term (('+' | '-') term)*
+     * term       := unary (('*' | '/' | '%') unary)*
+     * unary      := ('+' | '-') unary | power
+     * power      := primary ('^' unary)?
+     * primary    := number | identifier | '(' expression ')'
+     */
+    private static class Compiler {
+        private final String text;
+        private int pos;
+
+        private final List<Byte> code = new ArrayList<>();
+        private final List<Integer> operands = new ArrayList<>();
+        private final List<Double> constants = new ArrayList<>();
+        private final List<String> variables = new ArrayList<>();
+        private int depth;
+        private int maxDepth;
+
+        Compiler(String text) {
+            this.text = text;
+        }
+
+        CompiledExpression compile() {
+            if (text.isEmpty()) {
+                throw new IllegalArgumentException("Expression is empty");
+            }
+            parseExpression();
+            if (peek() != 0) {
+                throw error("Unexpected character '" + text.charAt(pos) + "'");
+            }
+
+            byte[] codeArray = new byte[code.size()];
+            int[] operandArray = new int[operands.size()];
+            for (int i = 0; i < codeArray.length; i++) {
+                codeArray[i] = code.get(i);
+                operandArray[i] = operands.get(i);
+            }
+            double[] constantArray = new double[constants.size()];
+            for (int i = 0; i < constantArray.length; i++) {
+                constantArray[i] = constants.get(i);
+            }
+            return new CompiledExpression(text, codeArray, operandArray, constantArray,
+                    variables.toArray(new String[0]), Math.max(maxDepth, 1));
+        }
+
+        private void parseExpression() {
+            parseTerm();
+            while (pos < text.length()) {
+                char c = peek();
+                if (c == '+' || c == '-') {
+                    pos++;
+                    parseTerm();
+                    emit(c == '+' ? ADD : SUB, 0);
+                } else {
+                    break;
+                }
+            }
+        }
+
+        private void parseTerm() {
+            parseUnary();
+            while (pos < text.length()) {
+                char c = peek();
+                if (c == '*' || c == '/' || c == '%') {
+                    pos++;
+                    parseUnary();
+                    emit(c == '*' ? MUL : c == '/' ? DIV : MOD, 0);
+                } else {
+                    break;
+                }
+            }
+        }
+
+        private void parseUnary() {
+            char next = peek();
+            if (next == '+' || next == '-') {
+                boolean negate = text.charAt(pos) == '-';
+                pos++;
+                parseUnary();
+                if (negate) {
+                    emit(NEG, 0);
+                }
+                return;
+            }
+            parsePower();
+        }
+
+        private void parsePower() {
+            parsePrimary();
+            if (peek() == '^') {
+                pos++;
+                // 乘方右结合：2^3^2 = 2^(3^2)
+                parseUnary();
+                emit(POW, 0);
+            }
+        }
+
+        private void parsePrimary() {
+            char c = peek();
+            if (c == 0) {
+                throw error("Unexpected end of expression");
+            }
+            if (c == '(') {
+                pos++;
+                parseExpression();
+                if (peek() != ')') {
+                    throw error("Missing ')'");
+                }
+                pos++;
+            } else if (Character.isDigit(c) || c == '.') {
+                int start = pos;
+                while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.')) {
+                    pos++;
+                }
+                // 科学计数法，如 1.5e3
+                if (pos < text.length() && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+                    int mark = pos++;
+                    if (pos < text.length() && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+                        pos++;
+                    }
+                    if (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                        while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                            pos++;
+                        }
+                    } else {
+                        pos = mark;
+                    }
+                }
+                String number = text.substring(start, pos);
+                try {
+                    constants.add(Double.parseDouble(number));
+                } catch (NumberFormatException e) {
+                    throw error("Invalid number '" + number + "'");
+                }
+                emit(PUSH_CONST, constants.size() - 1);
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = pos;
+                while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) {
+                    pos++;
+                }
+                String name = text.substring(start, pos);
+                int index = variables.indexOf(name);
+                if (index < 0) {
+                    variables.add(name);
+                    index = variables.size() - 1;
+                }
+                emit(LOAD_VAR, index);
+            } else {
+                throw error("Unexpected character '" + c + "'");
+            }
+        }
+
+        /**
+         * 跳过空白并返回当前字符，已到末尾时返回 0
+         */
+        private char peek() {
+            while (pos < text.length() && text.charAt(pos) == ' ') {
+                pos++;
+            }
+            return pos < text.length() ? text.charAt(pos) : 0;
+        }
+
+        private void emit(byte instruction, int operand) {
+            code.add(instruction);
+            operands.add(operand);
+            if (instruction == PUSH_CONST || instruction == LOAD_VAR) {
+                depth++;
+                maxDepth = Math.max(maxDepth, depth);
+            } else if (instruction != NEG) {
+                depth--;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos + " in \"" + text + "\"");
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.zhijian.tools.mcp.tools;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.spec.tool.Tool;
+import io.modelcontextprotocol.spec.content.Content;
+import io.modelcontextprotocol.spec.content.TextContent;
+import io.modelcontextprotocol.spec.tool.CallToolResult;
+import io.zhijian.tools.mcp.schema.ToolParam;
+import io.zhijian.tools.mcp.schema.ToolSchema;
+import io.zhijian.tools.mcp.schema.ToolSchemaRegistry;
+import io.zhijian.tools.mcp.cache.Deterministic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 表达式计算工具
+ * 一次调用完成整个算术表达式的求值，避免LLM把表达式拆成多轮calculator调用
+ */
+@Deterministic
+public class ExpressionTool {
+    private static final String TOOL_NAME = "expression";
+    private static final String TOOL_DESCRIPTION = "Evaluate an arithmetic expression (+ - * / % ^, parentheses, variables) in a single call";
+    private static final int MAX_CACHED_EXPRESSIONS = 512;
+
+    // 按规范化文本缓存编译结果，重复的表达式模板无需再次解析
+    private static final Map<String, CompiledExpression> COMPILED_CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, CompiledExpression>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+                    return size() > MAX_CACHED_EXPRESSIONS;
+                }
+            });
+
+    public static McpServerFeatures.SyncToolSpecification createTool() throws JsonProcessingException {
+        ToolSchema schema = ToolSchemaRegistry.schemaFor(Params.class, "urn:jsonschema:Expression");
+        return new McpServerFeatures.SyncToolSpecification(
+                new Tool(TOOL_NAME, TOOL_DESCRIPTION, schema.getJson()),
+                schema.validating((exchange, context) -> {
+                    List<Content> result = new ArrayList<>();
+                    try {
+                        Object expression = context.get("expression");
+                        Map<String, ?> variables = null;
+                        Object variablesArg = context.get("variables");
+                        if (variablesArg instanceof Map) {
+                            @SuppressWarnings("unchecked")
+                            Map<String, ?> map = (Map<String, ?>) variablesArg;
+                            variables = map;
+                        }
+
+                        double value = compile(expression.toString()).evaluate(variables);
+                        result.add(new TextContent("Result: " + value));
+                    }
+                    catch (Exception e) {
+                        result.add(new TextContent("Error: " + e.getMessage()));
+                        return new CallToolResult(result, true);
+                    }
+                    return new CallToolResult(result, false);
+                }));
+    }
+
+    /**
+     * 获取编译后的表达式，命中缓存时跳过解析
+     */
+    public static CompiledExpression compile(String expression) {
+        String key = CompiledExpression.normalize(expression);
+        CompiledExpression compiled = COMPILED_CACHE.get(key);
+        if (compiled == null) {
+            compiled = CompiledExpression.compile(key);
+            COMPILED_CACHE.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * 表达式工具参数声明
+     */
+    static class Params {
+        @ToolParam(description = "中缀算术表达式，支持 + - * / % ^ 和括号，例如 30 * 39 + 3 * 4 - 1；也可以使用变量名，如 price * qty",
+                required = true)
+        String expression;
+
+        @ToolParam(description = "表达式中变量的取值，例如 {\"price\": 12.5, \"qty\": 4}")
+        Map<String, Double> variables;
+    }
+}
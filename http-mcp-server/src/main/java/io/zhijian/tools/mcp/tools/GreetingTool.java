@@ -1,14 +1,14 @@
 package io.zhijian.tools.mcp.tools;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.modelcontextprotocol.server.McpServerFeatures;
 import io.modelcontextprotocol.spec.tool.Tool;
 import io.modelcontextprotocol.spec.content.Content;
 import io.modelcontextprotocol.spec.content.TextContent;
 import io.modelcontextprotocol.spec.tool.CallToolResult;
+import io.zhijian.tools.mcp.schema.ToolParam;
+import io.zhijian.tools.mcp.schema.ToolSchema;
+import io.zhijian.tools.mcp.schema.ToolSchemaRegistry;
 
 import java.time.LocalTime;
 import java.util.ArrayList;
@@ -23,9 +23,10 @@ public class GreetingTool {
     private static final String TOOL_DESCRIPTION = "Greeting Tool";
 
     public static McpServerFeatures.SyncToolSpecification createTool() throws JsonProcessingException {
+        ToolSchema schema = ToolSchemaRegistry.schemaFor(Params.class, "urn:jsonschema:Greeting");
         return new McpServerFeatures.SyncToolSpecification(
-                new Tool(TOOL_NAME, TOOL_DESCRIPTION, createSchema()),
-                (exchange, context) -> {
+                new Tool(TOOL_NAME, TOOL_DESCRIPTION, schema.getJson()),
+                schema.validating((exchange, context) -> {
                     List<Content> result = new ArrayList<>();
                     try {
                         String name = context.get("name").toString();
@@ -62,44 +63,20 @@ public class GreetingTool {
                         return new CallToolResult(result, true);
                     }
                     return new CallToolResult(result, true);
-                });
+                }));
     }
 
-    private static String createSchema() throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        ObjectNode rootNode = mapper.createObjectNode();
-        rootNode.put("type", "object");
-        rootNode.put("id", "urn:jsonschema:Greeting");
+    /**
+     * 问候工具参数声明
+     */
+    static class Params {
+        @ToolParam(description = "User name", required = true)
+        String name;
 
-        ObjectNode propertiesNode = mapper.createObjectNode();
+        @ToolParam(description = "Preferred language (en/zh)", enumValues = {"en", "zh"})
+        String language;
 
-        // name 属性
-        ObjectNode nameNode = mapper.createObjectNode();
-        nameNode.put("type", "string");
-        nameNode.put("description", "User name");
-
-        // language 属性
-        ObjectNode languageNode = mapper.createObjectNode();
-        languageNode.put("type", "string");
-        languageNode.put("description", "Preferred language (en/zh)");
-        ArrayNode languageEnum = mapper.createArrayNode();
-        languageEnum.add("en").add("zh");
-        languageNode.set("enum", languageEnum);
-
-        // style 属性
-        ObjectNode styleNode = mapper.createObjectNode();
-        styleNode.put("type", "string");
-        styleNode.put("description", "Greeting style (formal/casual)");
-        ArrayNode styleEnum = mapper.createArrayNode();
-        styleEnum.add("formal").add("casual");
-        styleNode.set("enum", styleEnum);
-
-        propertiesNode.set("name", nameNode);
-        propertiesNode.set("language", languageNode);
-        propertiesNode.set("style", styleNode);
-
-        rootNode.set("properties", propertiesNode);
-
-        return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(rootNode);
+        @ToolParam(description = "Greeting style (formal/casual)", enumValues = {"formal", "casual"})
+        String style;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+package io.zhijian.tools.mcp.tools;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.spec.tool.Tool;
+import io.modelcontextprotocol.spec.content.Content;
+import io.modelcontextprotocol.spec.content.TextContent;
+import io.modelcontextprotocol.spec.tool.CallToolResult;
+import io.zhijian.tools.mcp.resources.MemoryResourceManager;
+import io.zhijian.tools.mcp.schema.ToolParam;
+import io.zhijian.tools.mcp.schema.ToolSchema;
+import io.zhijian.tools.mcp.schema.ToolSchemaRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 内存资源列表工具
+ * 按命名空间分页列出 memory://{namespace}/{key} 资源，客户端用返回的游标继续翻页，
+ * 服务器每次只遍历一页的键，不会为一次请求构建完整列表
+ */
+public class MemoryListTool {
+    private static final String TOOL_NAME = "memory_list";
+    private static final String TOOL_DESCRIPTION = "List memory:// resource URIs page by page, optionally within one namespace";
+    private static final String URI_PREFIX = "memory://";
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 500;
+
+    public static McpServerFeatures.SyncToolSpecification createTool() throws JsonProcessingException {
+        ToolSchema schema = ToolSchemaRegistry.schemaFor(Params.class, "urn:jsonschema:MemoryList");
+        return new McpServerFeatures.SyncToolSpecification(
+                new Tool(TOOL_NAME, TOOL_DESCRIPTION, schema.getJson()),
+                schema.validating((exchange, context) -> {
+                    List<Content> result = new ArrayList<>();
+                    try {
+                        Object namespace = context.get("namespace");
+                        Object cursor = context.get("cursor");
+                        int limit = DEFAULT_LIMIT;
+                        if (context.get("limit") != null) {
+                            limit = (int) Double.parseDouble(context.get("limit").toString());
+                        }
+                        limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+
+                        String prefix = namespace != null && !namespace.toString().isEmpty()
+                                ? URI_PREFIX + namespace + "/"
+                                : URI_PREFIX;
+                        MemoryResourceManager.Page page = MemoryResourceManager.getInstance()
+                                .listResources(prefix, cursor != null ? cursor.toString() : null, limit);
+
+                        ObjectNode json = ToolSchemaRegistry.mapper().createObjectNode();
+                        ArrayNode uris = json.putArray("uris");
+                        for (String key : page.getKeys()) {
+                            uris.add(key);
+                        }
+                        if (page.getNextCursor() != null) {
+                            json.put("nextCursor", page.getNextCursor());
+                        }
+                        result.add(new TextContent(ToolSchemaRegistry.mapper().writeValueAsString(json)));
+                    }
+                    catch (Exception e) {
+                        result.add(new TextContent("Error: " + e.getMessage()));
+                        return new CallToolResult(result, true);
+                    }
+                    return new CallToolResult(result, false);
+                }));
+    }
+
+    /**
+     * 列表工具参数声明
+     */
+    static class Params {
+        @ToolParam(description = "命名空间，只列出 memory://{namespace}/ 下的资源；为空时列出全部")
+        String namespace;
+
+        @ToolParam(description = "上一页返回的 nextCursor，为空时从第一页开始")
+        String cursor;
+
+        @ToolParam(description = "每页最多返回的条数，默认 50，最大 500")
+        Integer limit;
+    }
+}
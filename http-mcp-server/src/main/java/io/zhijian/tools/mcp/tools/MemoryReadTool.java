@@ -0,0 +1,79 @@
+package io.zhijian.tools.mcp.tools;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.spec.tool.Tool;
+import io.modelcontextprotocol.spec.content.Content;
+import io.modelcontextprotocol.spec.content.TextContent;
+import io.modelcontextprotocol.spec.tool.CallToolResult;
+import io.zhijian.tools.mcp.resources.MemoryResource;
+import io.zhijian.tools.mcp.resources.MemoryResourceManager;
+import io.zhijian.tools.mcp.resources.OffHeapResource;
+import io.zhijian.tools.mcp.schema.ToolParam;
+import io.zhijian.tools.mcp.schema.ToolSchema;
+import io.zhijian.tools.mcp.schema.ToolSchemaRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 内存资源分块读取工具
+ * 从指定的字节偏移读取 memory:// 资源，堆外的大资源每次只解码一块，客户端按返回的 nextOffset 继续读取；
+ * resources/read 的请求无法携带偏移，只返回第一块，后续的块通过这个工具读取
+ */
+public class MemoryReadTool {
+    private static final String TOOL_NAME = "memory_read";
+    private static final String TOOL_DESCRIPTION = "Read a memory:// resource starting at a byte offset; large values are returned in chunks";
+
+    public static McpServerFeatures.SyncToolSpecification createTool() throws JsonProcessingException {
+        ToolSchema schema = ToolSchemaRegistry.schemaFor(Params.class, "urn:jsonschema:MemoryRead");
+        return new McpServerFeatures.SyncToolSpecification(
+                new Tool(TOOL_NAME, TOOL_DESCRIPTION, schema.getJson()),
+                schema.validating((exchange, context) -> {
+                    List<Content> result = new ArrayList<>();
+                    try {
+                        String uri = String.valueOf(context.get("uri"));
+                        long offset = 0;
+                        if (context.get("offset") != null) {
+                            offset = (long) Double.parseDouble(context.get("offset").toString());
+                        }
+
+                        Object value = MemoryResourceManager.getInstance().getResource(uri);
+                        if (value == null) {
+                            result.add(new TextContent("Error: Resource not found: " + uri));
+                            return new CallToolResult(result, true);
+                        }
+
+                        ObjectNode json = ToolSchemaRegistry.mapper().createObjectNode();
+                        if (value instanceof OffHeapResource) {
+                            OffHeapResource.Chunk chunk = ((OffHeapResource) value).readText(offset, MemoryResource.CHUNK_BYTES);
+                            json.put("text", chunk.getText());
+                            if (chunk.getNextOffset() >= 0) {
+                                json.put("nextOffset", chunk.getNextOffset());
+                            }
+                        } else {
+                            // 堆上的资源不超过堆外阈值，整体返回
+                            json.put("text", value.toString());
+                        }
+                        result.add(new TextContent(ToolSchemaRegistry.mapper().writeValueAsString(json)));
+                    }
+                    catch (Exception e) {
+                        result.add(new TextContent("Error: " + e.getMessage()));
+                        return new CallToolResult(result, true);
+                    }
+                    return new CallToolResult(result, false);
+                }));
+    }
+
+    /**
+     * 读取工具参数声明
+     */
+    static class Params {
+        @ToolParam(description = "资源 URI，例如 memory://{namespace}/{key}", required = true)
+        String uri;
+
+        @ToolParam(description = "起始字节偏移，上一次读取返回的 nextOffset，默认 0")
+        Long offset;
+    }
+}
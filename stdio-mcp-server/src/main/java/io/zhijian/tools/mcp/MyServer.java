@@ -11,6 +11,7 @@ import io.modelcontextprotocol.spec.initialization.ServerCapabilities;
 import io.zhijian.tools.mcp.resources.MemoryResource;
 import io.zhijian.tools.mcp.resources.MemoryResourceManager;
 import io.zhijian.tools.mcp.tools.CalculatorTool;
+import io.zhijian.tools.mcp.tools.ExpressionTool;
 import io.zhijian.tools.mcp.tools.GreetingTool;
 
 /**
@@ -47,6 +48,8 @@ public class MyServer {
             // 添加工具和资源
             System.out.println("Adding calculator tool...");
             syncServer.addTool(CalculatorTool.createTool());
+            System.out.println("Adding expression tool...");
+            syncServer.addTool(ExpressionTool.createTool());
             System.out.println("Adding memory resource...");
             syncServer.addResource(MemoryResource.createMemoryResource());
             System.out.println("Adding greeting tool...");
@@ -0,0 +1,52 @@
+package io.zhijian.tools.mcp.schema;
+
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.content.Content;
+import io.modelcontextprotocol.spec.content.TextContent;
+import io.modelcontextprotocol.spec.tool.CallToolResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * 预编译的工具参数架构
+ * 包含序列化好的 JSON Schema 文本和对应的参数校验器
+ */
+public class ToolSchema {
+    private final String json;
+    private final ArgumentValidator validator;
+
+    ToolSchema(String json, ArgumentValidator validator) {
+        this.json = json;
+        this.validator = validator;
+    }
+
+    /**
+     * 注册工具时使用的 JSON Schema 文本
+     */
+    public String getJson() {
+        return json;
+    }
+
+    public ArgumentValidator getValidator() {
+        return validator;
+    }
+
+    /**
+     * 在工具处理器之前执行参数校验，不合法的调用直接返回错误结果，不进入处理器
+     */
+    public BiFunction<McpSyncServerExchange, Map<String, Object>, CallToolResult> validating(
+            BiFunction<McpSyncServerExchange, Map<String, Object>, CallToolResult> handler) {
+        return (exchange, arguments) -> {
+            List<String> errors = validator.validate(arguments);
+            if (!errors.isEmpty()) {
+                List<Content> result = new ArrayList<>(1);
+                result.add(new TextContent("Error: Invalid arguments: " + String.join("; ", errors)));
+                return new CallToolResult(result, true);
+            }
+            return handler.apply(exchange, arguments);
+        };
+    }
+}
@@ -0,0 +1,185 @@
+package io.zhijian.tools.mcp.schema;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工具参数架构注册中心
+ * 根据标注了 {@link ToolParam} 的参数类，在启动时一次性生成 JSON Schema 和参数校验器，
+ * 所有工具共享同一个 ObjectMapper
+ */
+public class ToolSchemaRegistry {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Map<Class<?>, ToolSchema> SCHEMAS = new ConcurrentHashMap<>();
+
+    private ToolSchemaRegistry() {}
+
+    /**
+     * 共享的 ObjectMapper
+     */
+    public static ObjectMapper mapper() {
+        return MAPPER;
+    }
+
+    /**
+     * 获取参数类对应的架构，首次调用时生成并缓存
+     * @param paramsClass 参数类
+     * @param schemaId 架构ID，如 urn:jsonschema:Operation
+     */
+    public static ToolSchema schemaFor(Class<?> paramsClass, String schemaId) throws JsonProcessingException {
+        ToolSchema schema = SCHEMAS.get(paramsClass);
+        if (schema == null) {
+            ObjectNode rootNode = buildObjectSchema(paramsClass);
+            rootNode.put("id", schemaId);
+            schema = new ToolSchema(MAPPER.writeValueAsString(rootNode), buildValidator(paramsClass));
+            ToolSchema existing = SCHEMAS.putIfAbsent(paramsClass, schema);
+            if (existing != null) {
+                schema = existing;
+            }
+        }
+        return schema;
+    }
+
+    private static ObjectNode buildObjectSchema(Class<?> paramsClass) {
+        ObjectNode objectNode = MAPPER.createObjectNode();
+        objectNode.put("type", "object");
+
+        ObjectNode propertiesNode = MAPPER.createObjectNode();
+        ArrayNode requiredNode = MAPPER.createArrayNode();
+        for (Field field : paramsClass.getDeclaredFields()) {
+            ToolParam param = field.getAnnotation(ToolParam.class);
+            if (param == null) {
+                continue;
+            }
+            ObjectNode propertyNode = buildTypeSchema(field.getGenericType());
+            if (!param.description().isEmpty()) {
+                propertyNode.put("description", param.description());
+            }
+            if (param.enumValues().length > 0) {
+                ArrayNode enumNode = MAPPER.createArrayNode();
+                for (String value : param.enumValues()) {
+                    enumNode.add(value);
+                }
+                propertyNode.set("enum", enumNode);
+            }
+            propertiesNode.set(nameOf(field, param), propertyNode);
+            if (param.required()) {
+                requiredNode.add(nameOf(field, param));
+            }
+        }
+
+        objectNode.set("properties", propertiesNode);
+        if (requiredNode.size() > 0) {
+            objectNode.set("required", requiredNode);
+        }
+        return objectNode;
+    }
+
+    private static ObjectNode buildTypeSchema(Type type) {
+        ArgumentValidator.Type schemaType = schemaTypeOf(type);
+        if (schemaType == ArgumentValidator.Type.OBJECT && type instanceof Class && !Map.class.isAssignableFrom((Class<?>) type)) {
+            return buildObjectSchema((Class<?>) type);
+        }
+
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("type", schemaType.schemaName);
+        Type elementType = elementTypeOf(type);
+        if (elementType != null) {
+            node.set(schemaType == ArgumentValidator.Type.ARRAY ? "items" : "additionalProperties",
+                    buildTypeSchema(elementType));
+        }
+        return node;
+    }
+
+    private static ArgumentValidator buildValidator(Class<?> paramsClass) {
+        List<String> names = new ArrayList<>();
+        List<ArgumentValidator.Rule> rules = new ArrayList<>();
+        List<String> requiredNames = new ArrayList<>();
+        for (Field field : paramsClass.getDeclaredFields()) {
+            ToolParam param = field.getAnnotation(ToolParam.class);
+            if (param == null) {
+                continue;
+            }
+            names.add(nameOf(field, param));
+            rules.add(buildRule(field.getGenericType(), param.enumValues()));
+            if (param.required()) {
+                requiredNames.add(nameOf(field, param));
+            }
+        }
+        return new ArgumentValidator(names, rules, requiredNames);
+    }
+
+    private static ArgumentValidator.Rule buildRule(Type type, String[] enumValues) {
+        ArgumentValidator.Type schemaType = schemaTypeOf(type);
+        Type elementType = elementTypeOf(type);
+        ArgumentValidator.Rule elementRule = elementType != null ? buildRule(elementType, new String[0]) : null;
+        ArgumentValidator objectValidator = null;
+        if (schemaType == ArgumentValidator.Type.OBJECT && type instanceof Class && !Map.class.isAssignableFrom((Class<?>) type)) {
+            objectValidator = buildValidator((Class<?>) type);
+        }
+        return new ArgumentValidator.Rule(schemaType, enumValues, elementRule, objectValidator);
+    }
+
+    private static ArgumentValidator.Type schemaTypeOf(Type type) {
+        Class<?> raw = rawClassOf(type);
+        if (raw == String.class || raw.isEnum()) {
+            return ArgumentValidator.Type.STRING;
+        }
+        if (raw == boolean.class || raw == Boolean.class) {
+            return ArgumentValidator.Type.BOOLEAN;
+        }
+        if (raw.isPrimitive() || Number.class.isAssignableFrom(raw)) {
+            return ArgumentValidator.Type.NUMBER;
+        }
+        if (raw.isArray() || Collection.class.isAssignableFrom(raw)) {
+            return ArgumentValidator.Type.ARRAY;
+        }
+        return ArgumentValidator.Type.OBJECT;
+    }
+
+    /**
+     * 数组/集合的元素类型，或 Map 的值类型
+     */
+    private static Type elementTypeOf(Type type) {
+        Class<?> raw = rawClassOf(type);
+        if (raw.isArray()) {
+            return raw.getComponentType();
+        }
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (Collection.class.isAssignableFrom(raw)) {
+                return arguments[0];
+            }
+            if (Map.class.isAssignableFrom(raw)) {
+                return arguments[1];
+            }
+        }
+        return null;
+    }
+
+    private static Class<?> rawClassOf(Type type) {
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        return Object.class;
+    }
+
+    private static String nameOf(Field field, ToolParam param) {
+        return param.name().isEmpty() ? field.getName() : param.name();
+    }
+}
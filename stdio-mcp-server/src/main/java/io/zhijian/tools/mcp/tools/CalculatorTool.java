@@ -1,35 +1,52 @@
 package io.zhijian.tools.mcp.tools;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.modelcontextprotocol.server.McpServerFeatures;
 import io.modelcontextprotocol.spec.tool.Tool;
 import io.modelcontextprotocol.spec.content.Content;
 import io.modelcontextprotocol.spec.content.TextContent;
 import io.modelcontextprotocol.spec.tool.CallToolResult;
+import io.zhijian.tools.mcp.schema.ToolParam;
+import io.zhijian.tools.mcp.schema.ToolSchema;
+import io.zhijian.tools.mcp.schema.ToolSchemaRegistry;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 计算器工具
- * 提供基本的数学运算功能
+ * 提供基本的数学运算功能，支持单次计算和批量计算
  */
 public class CalculatorTool {
     private static final String TOOL_NAME = "calculator";
     private static final String TOOL_DESCRIPTION = "Basic calculator";
 
+    // 运算类型编码，批量计算时按编码分派，避免逐元素比较字符串
+    private static final byte OP_ADD = 0;
+    private static final byte OP_SUBTRACT = 1;
+    private static final byte OP_MULTIPLY = 2;
+    private static final byte OP_DIVIDE = 3;
+    private static final byte OP_INVALID = -1;
+
     public static McpServerFeatures.SyncToolSpecification createTool() throws JsonProcessingException {
+        ToolSchema schema = ToolSchemaRegistry.schemaFor(Params.class, "urn:jsonschema:Operation");
         return new McpServerFeatures.SyncToolSpecification(
-                new Tool(TOOL_NAME, TOOL_DESCRIPTION, createSchema()),
-                (exchange, context) -> {
+                new Tool(TOOL_NAME, TOOL_DESCRIPTION, schema.getJson()),
+                schema.validating((exchange, context) -> {
                     List<Content> result = new ArrayList<>();
                     try {
+                        // 批量模式：一次调用完成多组计算
+                        if (context.containsKey("batch")) {
+                            return evaluateRecords(context.get("batch"));
+                        }
+                        if (context.containsKey("a_values") || context.containsKey("b_values")) {
+                            return evaluateVector(context.get("operation"), context.get("a_values"), context.get("b_values"));
+                        }
+
                         String operation = context.get("operation").toString();
-                        double a = Double.valueOf(context.get("a").toString());
-                        double b = Double.valueOf(context.get("b").toString());
+                        double a = toDouble(context.get("a"));
+                        double b = toDouble(context.get("b"));
                         double calculationResult;
 
                         switch (operation) {
@@ -61,36 +78,209 @@ public class CalculatorTool {
                         return new CallToolResult(result, true);
                     }
                     return new CallToolResult(result, true);
-                });
+                }));
+    }
+
+    /**
+     * 向量模式：同一种运算作用于 a_values[i] 和 b_values[i]
+     */
+    private static CallToolResult evaluateVector(Object operation, Object aValues, Object bValues) {
+        if (operation == null) {
+            return error("Error: operation is required for a_values/b_values.");
+        }
+        byte op = parseOperation(operation.toString());
+        if (op == OP_INVALID) {
+            return error("Error: Invalid operation. Only add, subtract, multiply, and divide are allowed.");
+        }
+        double[] a = toDoubleArray(aValues, "a_values");
+        double[] b = toDoubleArray(bValues, "b_values");
+        if (a.length != b.length) {
+            return error("Error: a_values and b_values must have the same length.");
+        }
+        if (op == OP_DIVIDE) {
+            for (int i = 0; i < b.length; i++) {
+                if (b[i] == 0) {
+                    return error("Error: Division by zero is not allowed (index " + i + ").");
+                }
+            }
+        }
+
+        double[] out = new double[a.length];
+        // 每种运算一个独立的紧凑循环，便于JIT做向量化
+        switch (op) {
+            case OP_ADD:
+                for (int i = 0; i < out.length; i++) {
+                    out[i] = a[i] + b[i];
+                }
+                break;
+            case OP_SUBTRACT:
+                for (int i = 0; i < out.length; i++) {
+                    out[i] = a[i] - b[i];
+                }
+                break;
+            case OP_MULTIPLY:
+                for (int i = 0; i < out.length; i++) {
+                    out[i] = a[i] * b[i];
+                }
+                break;
+            default:
+                for (int i = 0; i < out.length; i++) {
+                    out[i] = a[i] / b[i];
+                }
+                break;
+        }
+        return success(out);
     }
 
-    private static String createSchema() throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        ObjectNode rootNode = mapper.createObjectNode();
-        rootNode.put("type", "object");
-        rootNode.put("id", "urn:jsonschema:Operation");
+    /**
+     * 记录模式：batch 为 {operation, a, b} 记录列表，每条记录可以使用不同运算
+     */
+    private static CallToolResult evaluateRecords(Object batch) {
+        if (!(batch instanceof List)) {
+            return error("Error: batch must be an array of {operation, a, b} records.");
+        }
+        List<?> records = (List<?>) batch;
+        int size = records.size();
+        byte[] ops = new byte[size];
+        double[] a = new double[size];
+        double[] b = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            Object item = records.get(i);
+            if (!(item instanceof Map)) {
+                return error("Error: batch[" + i + "] must be an object.");
+            }
+            Map<?, ?> record = (Map<?, ?>) item;
+            Object operation = record.get("operation");
+            ops[i] = operation != null ? parseOperation(operation.toString()) : OP_INVALID;
+            if (ops[i] == OP_INVALID) {
+                return error("Error: Invalid operation at batch[" + i + "]. Only add, subtract, multiply, and divide are allowed.");
+            }
+            a[i] = toDouble(record.get("a"));
+            b[i] = toDouble(record.get("b"));
+            if (ops[i] == OP_DIVIDE && b[i] == 0) {
+                return error("Error: Division by zero is not allowed (index " + i + ").");
+            }
+        }
 
-        ObjectNode propertiesNode = mapper.createObjectNode();
+        double[] out = new double[size];
+        for (int i = 0; i < size; i++) {
+            switch (ops[i]) {
+                case OP_ADD:
+                    out[i] = a[i] + b[i];
+                    break;
+                case OP_SUBTRACT:
+                    out[i] = a[i] - b[i];
+                    break;
+                case OP_MULTIPLY:
+                    out[i] = a[i] * b[i];
+                    break;
+                default:
+                    out[i] = a[i] / b[i];
+                    break;
+            }
+        }
+        return success(out);
+    }
 
-        ObjectNode operationNode = mapper.createObjectNode();
-        operationNode.put("type", "string");
-        operationNode.put("description", "计算操作类型，只能是add、subtract、multiply、divide四种");
-        ArrayNode enumNode = mapper.createArrayNode();
-        enumNode.add("add").add("subtract").add("multiply").add("divide");
-        operationNode.set("enum", enumNode);
+    private static byte parseOperation(String operation) {
+        switch (operation) {
+            case "add":
+                return OP_ADD;
+            case "subtract":
+                return OP_SUBTRACT;
+            case "multiply":
+                return OP_MULTIPLY;
+            case "divide":
+                return OP_DIVIDE;
+            default:
+                return OP_INVALID;
+        }
+    }
 
-        ObjectNode aNode = mapper.createObjectNode();
-        aNode.put("type", "number");
+    private static double toDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("missing numeric operand");
+        }
+        return Double.parseDouble(value.toString());
+    }
 
-        ObjectNode bNode = mapper.createObjectNode();
-        bNode.put("type", "number");
+    private static double[] toDoubleArray(Object value, String name) {
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException(name + " must be an array of numbers");
+        }
+        List<?> list = (List<?>) value;
+        double[] buffer = new double[list.size()];
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = toDouble(list.get(i));
+        }
+        return buffer;
+    }
+
+    /**
+     * 批量结果以紧凑的数组形式返回：Results: [r0, r1, ...]
+     */
+    private static CallToolResult success(double[] values) {
+        StringBuilder text = new StringBuilder(values.length * 8 + 12).append("Results: [");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(values[i]);
+        }
+        text.append(']');
+        List<Content> result = new ArrayList<>(1);
+        result.add(new TextContent(text.toString()));
+        return new CallToolResult(result, false);
+    }
+
+    private static CallToolResult error(String message) {
+        List<Content> result = new ArrayList<>(1);
+        result.add(new TextContent(message));
+        return new CallToolResult(result, true);
+    }
+
+    /**
+     * 计算器参数声明，用于生成工具的 JSON Schema 和参数校验器
+     */
+    static class Params {
+        @ToolParam(description = "计算操作类型，只能是add、subtract、multiply、divide四种",
+                enumValues = {"add", "subtract", "multiply", "divide"})
+        String operation;
+
+        @ToolParam
+        double a;
+
+        @ToolParam
+        double b;
+
+        // 向量模式：operation 作用于两组等长的操作数
+        @ToolParam(name = "a_values", description = "批量计算的左操作数列表，与b_values等长，配合operation使用")
+        double[] aValues;
+
+        @ToolParam(name = "b_values", description = "批量计算的右操作数列表，与a_values等长")
+        double[] bValues;
+
+        // 记录模式：每条记录独立指定运算
+        @ToolParam(description = "批量计算记录列表，每条记录包含operation、a、b，一次调用返回全部结果")
+        List<CalculationRecord> batch;
+    }
 
-        propertiesNode.set("operation", operationNode);
-        propertiesNode.set("a", aNode);
-        propertiesNode.set("b", bNode);
+    /**
+     * 批量计算中的单条记录
+     */
+    static class CalculationRecord {
+        @ToolParam(description = "计算操作类型，只能是add、subtract、multiply、divide四种",
+                enumValues = {"add", "subtract", "multiply", "divide"})
+        String operation;
 
-        rootNode.set("properties", propertiesNode);
+        @ToolParam
+        double a;
 
-        return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(rootNode);
+        @ToolParam
+        double b;
     }
-} 
\ No newline at end of file
+}